@@ -0,0 +1,48 @@
+package com.gama.interpreter;
+
+public class ArrayNatives {
+    private ArrayNatives() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("array", new NativeFunction("array", 1, (interpreter, arguments) -> {
+            Object size = arguments.get(0);
+            if (!(size instanceof Double) || (double) size < 0 || (double) size != Math.floor((double) size)) {
+                throw new NativeError("Array size must be a non-negative integer.");
+            }
+            interpreter.allocate();
+            return new LoxArray((int) (double) size);
+        }));
+        globals.define("len", new NativeFunction("len", 1, (interpreter, arguments) -> {
+            Object value = arguments.get(0);
+            if (value instanceof LoxArray) {
+                return (double) ((LoxArray) value).size();
+            }
+            if (value instanceof LoxMap) {
+                return (double) ((LoxMap) value).size();
+            }
+            if (value instanceof String) {
+                return (double) ((String) value).length();
+            }
+            throw new NativeError("Can only take the length of an array, a map or a string.");
+        }));
+        globals.define("push", new NativeFunction("push", 2, (interpreter, arguments) -> {
+            checkArray(arguments.get(0)).push(arguments.get(1));
+            return null;
+        }));
+        globals.define("pop", new NativeFunction("pop", 1, (interpreter, arguments) -> {
+            LoxArray array = checkArray(arguments.get(0));
+            if (array.size() == 0) {
+                throw new NativeError("Cannot pop from an empty array.");
+            }
+            return array.pop();
+        }));
+    }
+
+    static LoxArray checkArray(Object array) {
+        if (!(array instanceof LoxArray)) {
+            throw new NativeError("Expected an array.");
+        }
+        return (LoxArray) array;
+    }
+}
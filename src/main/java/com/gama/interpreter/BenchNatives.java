@@ -0,0 +1,95 @@
+package com.gama.interpreter;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class BenchNatives {
+    private static final int DEFAULT_WARMUP = 1000;
+    private static final int DEFAULT_ITERATIONS = 1000;
+
+    /**
+     * Every result a benchmarked function returns is written here, so nothing it computes can be optimized away.
+     */
+    private static volatile Object sink;
+
+    private BenchNatives() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("nanoClock", new NativeFunction("nanoClock", 0,
+                (interpreter, arguments) -> (double) System.nanoTime()));
+        globals.define("bench", new NativeFunction("bench", 2, (interpreter, arguments) -> {
+            Object function = arguments.get(0);
+            if (!(function instanceof LoxCallable) || ((LoxCallable) function).arity() != 0) {
+                throw new NativeError("Can only benchmark a function without parameters.");
+            }
+            Object options = arguments.get(1);
+            if (options != null && !(options instanceof LoxMap)) {
+                throw new NativeError("Benchmark options must be a map or nil.");
+            }
+            int warmup = option((LoxMap) options, "warmup", DEFAULT_WARMUP, 0);
+            int iterations = option((LoxMap) options, "iterations", DEFAULT_ITERATIONS, 1);
+            return bench(interpreter, (LoxCallable) function, warmup, iterations);
+        }));
+    }
+
+    private static int option(LoxMap options, String name, int defaultValue, int min) {
+        if (options == null || !options.containsKey(name)) {
+            return defaultValue;
+        }
+        Object value = options.get(name);
+        if (!(value instanceof Double) || (double) value < min || (double) value != Math.floor((double) value)
+                || (double) value > Integer.MAX_VALUE) {
+            throw new NativeError("Benchmark option '" + name + "' must be an integer of at least " + min + ".");
+        }
+        return (int) (double) value;
+    }
+
+    /**
+     * Runs {@code function} for the warm-up iterations, then times each measured iteration on its own. Times are in
+     * nanoseconds per call, less the cost of reading the clock.
+     */
+    private static LoxMap bench(Interpreter interpreter, LoxCallable function, int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            sink = function.call(interpreter, Collections.emptyList());
+        }
+        long overhead = clockOverhead();
+        long[] samples = new long[iterations];
+        long allocationsBefore = interpreter.allocationCount();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink = function.call(interpreter, Collections.emptyList());
+            samples[i] = Math.max(0, System.nanoTime() - start - overhead);
+        }
+        long allocations = interpreter.allocationCount() - allocationsBefore;
+        Arrays.sort(samples);
+        long total = 0;
+        for (long sample : samples) {
+            total += sample;
+        }
+        LoxMap result = new LoxMap();
+        result.put("iterations", (double) iterations);
+        result.put("mean", (double) total / iterations);
+        result.put("min", (double) samples[0]);
+        result.put("p50", (double) percentile(samples, 50));
+        result.put("p90", (double) percentile(samples, 90));
+        result.put("p99", (double) percentile(samples, 99));
+        result.put("max", (double) samples[iterations - 1]);
+        result.put("allocations", (double) allocations / iterations);
+        return result;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static long clockOverhead() {
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < 1000; i++) {
+            long start = System.nanoTime();
+            min = Math.min(min, System.nanoTime() - start);
+        }
+        return min;
+    }
+}
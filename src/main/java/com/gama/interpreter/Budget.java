@@ -0,0 +1,66 @@
+package com.gama.interpreter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits on how much work a single run may do: steps (loop iterations and function calls), allocations (instances,
+ * arrays, maps, closures and call frames) and wall-clock time. Interpreters count locally and only settle with the
+ * run's {@link Meter} every {@link #CHECK_INTERVAL} steps, so a limit can be overshot by that many steps per coroutine.
+ */
+public class Budget {
+    static final int CHECK_INTERVAL = 1024;
+
+    public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE, Long.MAX_VALUE, 0);
+
+    private final long maxSteps;
+    private final long maxAllocations;
+    private final long timeoutMillis;
+
+    private Budget(long maxSteps, long maxAllocations, long timeoutMillis) {
+        this.maxSteps = maxSteps;
+        this.maxAllocations = maxAllocations;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Budget withMaxSteps(long maxSteps) {
+        return new Budget(maxSteps, maxAllocations, timeoutMillis);
+    }
+
+    public Budget withMaxAllocations(long maxAllocations) {
+        return new Budget(maxSteps, maxAllocations, timeoutMillis);
+    }
+
+    public Budget withTimeout(long timeoutMillis) {
+        return new Budget(maxSteps, maxAllocations, timeoutMillis);
+    }
+
+    Meter start() {
+        return this == UNLIMITED ? null : new Meter();
+    }
+
+    /**
+     * What one run has used so far, shared by every coroutine it spawns.
+     */
+    class Meter {
+        private final AtomicLong steps = new AtomicLong();
+        private final AtomicLong allocations = new AtomicLong();
+        private final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        /**
+         * Adds to the totals and returns why the run must stop, or null if it is still within budget.
+         */
+        String charge(long steps, long allocations) {
+            if (this.steps.addAndGet(steps) > maxSteps) {
+                return "Execution exceeded its budget of " + maxSteps + " steps.";
+            }
+            if (this.allocations.addAndGet(allocations) > maxAllocations) {
+                return "Execution exceeded its budget of " + maxAllocations + " allocations.";
+            }
+            if (timeoutMillis > 0 && System.nanoTime() - deadline > 0) {
+                return "Execution exceeded its time limit of " + timeoutMillis + " ms.";
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.gama.interpreter;
+
+/**
+ * One variable a function closes over, as worked out by the {@link Resolver}: where to find it, counted in
+ * environments from the one the function is created in. A variable of the immediately enclosing function is taken
+ * from its frame; anything further out is shared from the enclosing function's own captures.
+ */
+public class Capture {
+    public final String name;
+    public final int depth;
+    public final boolean fromEnclosingCaptures;
+
+    public Capture(String name, int depth, boolean fromEnclosingCaptures) {
+        this.name = name;
+        this.depth = depth;
+        this.fromEnclosingCaptures = fromEnclosingCaptures;
+    }
+}
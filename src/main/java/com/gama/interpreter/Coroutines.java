@@ -0,0 +1,81 @@
+package com.gama.interpreter;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Natives for running Lox functions concurrently. Each spawned function gets its own
+ * interpreter (its own frame stack) over the heap objects of the script that spawned it.
+ */
+public class Coroutines {
+    private static final ExecutorService executor = createExecutor();
+
+    private Coroutines() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("spawn", new NativeFunction("spawn", 1, (interpreter, arguments) -> {
+            Object function = arguments.get(0);
+            if (!(function instanceof LoxCallable) || ((LoxCallable) function).arity() != 0) {
+                throw new NativeError("Can only spawn a function taking no arguments.");
+            }
+            LoxTask task = new LoxTask((LoxCallable) function, interpreter.fork());
+            executor.execute(task);
+            return task;
+        }));
+        globals.define("join", new NativeFunction("join", 1, (interpreter, arguments) -> {
+            Object task = arguments.get(0);
+            if (!(task instanceof LoxTask)) {
+                throw new NativeError("Can only join a task.");
+            }
+            return ((LoxTask) task).join();
+        }));
+        globals.define("channel", new NativeFunction("channel", 1, (interpreter, arguments) -> {
+            Object capacity = arguments.get(0);
+            if (!(capacity instanceof Double) || (double) capacity < 0 || (double) capacity != Math.floor((double) capacity)) {
+                throw new NativeError("Channel capacity must be a non-negative integer.");
+            }
+            return new LoxChannel((int) (double) capacity);
+        }));
+        globals.define("send", new NativeFunction("send", 2, (interpreter, arguments) -> {
+            checkChannel(arguments.get(0)).send(arguments.get(1));
+            return null;
+        }));
+        globals.define("receive", new NativeFunction("receive", 1, (interpreter, arguments) ->
+                checkChannel(arguments.get(0)).receive()));
+        globals.define("synchronized", new NativeFunction("synchronized", 2, (interpreter, arguments) -> {
+            Object lock = arguments.get(0);
+            Object function = arguments.get(1);
+            if (!(lock instanceof LoxInstance)) {
+                throw new NativeError("Can only synchronize on an instance.");
+            }
+            if (!(function instanceof LoxCallable) || ((LoxCallable) function).arity() != 0) {
+                throw new NativeError("Can only run a function taking no arguments while synchronized.");
+            }
+            synchronized (lock) {
+                return ((LoxCallable) function).call(interpreter, Collections.emptyList());
+            }
+        }));
+    }
+
+    private static LoxChannel checkChannel(Object channel) {
+        if (!(channel instanceof LoxChannel)) {
+            throw new NativeError("Expected a channel.");
+        }
+        return (LoxChannel) channel;
+    }
+
+    private static ExecutorService createExecutor() {
+        try {
+            // Virtual threads only exist from Java 21 on, while we still compile for Java 8.
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "lox-coroutine");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -1,63 +1,111 @@
-package com.gama.interpreter;
-
-import java.util.HashMap;
-import java.util.Map;
-
-public class Environment {
-    public final Environment enclosing;
-    private final Map<String, Object> values = new HashMap<>();
-
-    public Environment() {
-        this(null);
-    }
-
-    public Environment(Environment enclosing) {
-        this.enclosing = enclosing;
-    }
-
-    public void define(String name) {
-        values.put(name, null);
-    }
-
-    public void define(String name, Object value) {
-        values.put(name, value);
-    }
-
-    public Object get(Token name) {
-        if (values.containsKey(name.lexeme)) {
-            return values.get(name.lexeme);
-        }
-        if (enclosing != null) {
-            return enclosing.get(name);
-        }
-        throw new RuntimeError(name, "Undefined variable name: " + name.lexeme + ".");
-    }
-
-    public Object getAt(int distance, String name) {
-        return ancestor(distance).values.get(name);
-    }
-
-    public void assignAt(int distance, Token name, Object value) {
-        ancestor(distance).values.put(name.lexeme, value);
-    }
-
-    private Environment ancestor(int distance) {
-        Environment environment = this;
-        for (; distance > 0; --distance) {
-            environment = environment.enclosing;
-        }
-        return environment;
-    }
-
-    public void assign(Token name, Object value) {
-        if (values.containsKey(name.lexeme)) {
-            values.put(name.lexeme, value);
-            return;
-        }
-        if (enclosing != null) {
-            enclosing.assign(name, value);
-            return;
-        }
-        throw new RuntimeError(name, "Undefined variable " + name.lexeme + ".");
-    }
-}
+package com.gama.interpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Environment {
+    public final Environment enclosing;
+    private final Map<String, Object> values = new HashMap<>();
+    private Map<String, Upvalue> openUpvalues;
+
+    public Environment() {
+        this(null);
+    }
+
+    public Environment(Environment enclosing) {
+        this.enclosing = enclosing;
+    }
+
+    public void define(String name) {
+        values.put(name, null);
+    }
+
+    public void define(String name, Object value) {
+        values.put(name, value);
+    }
+
+    public Object get(Token name) {
+        if (values.containsKey(name.lexeme)) {
+            return values.get(name.lexeme);
+        }
+        if (enclosing != null) {
+            return enclosing.get(name);
+        }
+        throw new RuntimeError(name, "Undefined variable name: " + name.lexeme + ".");
+    }
+
+    public Object getAt(int distance, String name) {
+        return ancestor(distance).values.get(name);
+    }
+
+    public void assignAt(int distance, Token name, Object value) {
+        ancestor(distance).values.put(name.lexeme, value);
+    }
+
+    public Object getCapturedAt(int distance, String name) {
+        return ((Upvalue) ancestor(distance).values.get(name)).get();
+    }
+
+    public void assignCapturedAt(int distance, Token name, Object value) {
+        ((Upvalue) ancestor(distance).values.get(name.lexeme)).set(value);
+    }
+
+    /**
+     * Returns the upvalue through which closures share a variable of the frame {@code distance} levels up, opening
+     * one if none of them captured it yet.
+     */
+    public Upvalue captureAt(int distance, String name) {
+        Environment frame = ancestor(distance);
+        synchronized (frame) {
+            if (frame.openUpvalues == null) {
+                frame.openUpvalues = new HashMap<>();
+            }
+            return frame.openUpvalues.computeIfAbsent(name, key -> new Upvalue(frame, key));
+        }
+    }
+
+    public void closeUpvalues() {
+        if (openUpvalues == null) {
+            return;
+        }
+        synchronized (this) {
+            openUpvalues.values().forEach(Upvalue::close);
+            openUpvalues = null;
+        }
+    }
+
+    /**
+     * Whether the local variable {@code name} of the frame {@code distance} levels up holds a number and is not shared
+     * with any closure.
+     */
+    public boolean holdsUncapturedNumber(int distance, String name) {
+        Environment frame = ancestor(distance);
+        if (frame instanceof GlobalEnvironment) {
+            return false;
+        }
+        synchronized (frame) {
+            boolean captured = frame.openUpvalues != null && frame.openUpvalues.containsKey(name);
+            return !captured && frame.values.get(name) instanceof Double;
+        }
+    }
+
+    private Environment ancestor(int distance) {
+        Environment environment = this;
+        for (; distance > 0; --distance) {
+            environment = environment.enclosing;
+        }
+        return environment;
+    }
+
+    public void assign(Token name, Object value) {
+        if (values.containsKey(name.lexeme)) {
+            values.put(name.lexeme, value);
+            return;
+        }
+        if (enclosing != null) {
+            enclosing.assign(name, value);
+            return;
+        }
+        throw new RuntimeError(name, "Undefined variable " + name.lexeme + ".");
+    }
+}
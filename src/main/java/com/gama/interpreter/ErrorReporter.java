@@ -0,0 +1,59 @@
+package com.gama.interpreter;
+
+import java.io.PrintStream;
+
+public class ErrorReporter {
+    private final PrintStream err;
+    private volatile boolean hadError;
+    private volatile boolean hadRuntimeError;
+
+    public ErrorReporter(PrintStream err) {
+        this.err = err;
+    }
+
+    public boolean hadError() {
+        return hadError;
+    }
+
+    public boolean hadRuntimeError() {
+        return hadRuntimeError;
+    }
+
+    public void clearError() {
+        hadError = false;
+    }
+
+    void warning(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message, false);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message, false);
+        }
+    }
+
+    void error(Token token, String message) {
+        if (token.type == TokenType.EOF) {
+            report(token.line, " at end", message, true);
+        } else {
+            report(token.line, " at '" + token.lexeme + "'", message, true);
+        }
+    }
+
+    void error(int line, String message) {
+        report(line, "", message, true);
+    }
+
+    private void report(int line, String where, String message, boolean isError) {
+        String messageSeverity = isError ? "Error" : "Warning";
+        err.println("[line " + line + "] " + messageSeverity + where + ": " + message);
+        if (isError) {
+            hadError = true;
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        err.println(error.getMessage() + "\n[line " + error.token.line + "]");
+        hadRuntimeError = true;
+        InterpreterMetrics.RUNTIME_ERRORS.increment();
+    }
+}
@@ -1,238 +1,391 @@
-package com.gama.interpreter;
-
-import java.util.List;
-
-abstract class Expr {
-
-  public interface Visitor<R> {
-    R visitAssignExpr(Assign expr);
-    R visitBinaryExpr(Binary expr);
-    R visitCallExpr(Call expr);
-    R visitGetExpr(Get expr);
-    R visitGroupingExpr(Grouping expr);
-    R visitLiteralExpr(Literal expr);
-    R visitLogicalExpr(Logical expr);
-    R visitSetExpr(Set expr);
-    R visitSuperExpr(Super expr);
-    R visitThisExpr(This expr);
-    R visitUnaryExpr(Unary expr);
-    R visitTernaryExpr(Ternary expr);
-    R visitVariableExpr(Variable expr);
-    R visitAnonFunctionExpr(AnonFunction expr);
-  }
-
-  public abstract <R> R accept(Visitor<R> visitor);
-
-  public static class Assign extends Expr {
-    public final Token name;
-    public final Expr value;
-
-    public Assign(Token name, Expr value) {
-      this.name = name;
-      this.value = value;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitAssignExpr(this);
-    }
-  }
-
-  public static class Binary extends Expr {
-    public final Expr left;
-    public final Token operator;
-    public final Expr right;
-
-    public Binary(Expr left, Token operator, Expr right) {
-      this.left = left;
-      this.operator = operator;
-      this.right = right;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitBinaryExpr(this);
-    }
-  }
-
-  public static class Call extends Expr {
-    public final Expr callee;
-    public final Token paren;
-    public final List<Expr> arguments;
-
-    public Call(Expr callee, Token paren, List<Expr> arguments) {
-      this.callee = callee;
-      this.paren = paren;
-      this.arguments = arguments;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitCallExpr(this);
-    }
-  }
-
-  public static class Get extends Expr {
-    public final Expr object;
-    public final Token name;
-
-    public Get(Expr object, Token name) {
-      this.object = object;
-      this.name = name;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitGetExpr(this);
-    }
-  }
-
-  public static class Grouping extends Expr {
-    public final Expr expression;
-
-    public Grouping(Expr expression) {
-      this.expression = expression;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitGroupingExpr(this);
-    }
-  }
-
-  public static class Literal extends Expr {
-    public final Object value;
-
-    public Literal(Object value) {
-      this.value = value;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitLiteralExpr(this);
-    }
-  }
-
-  public static class Logical extends Expr {
-    public final Expr left;
-    public final Token operator;
-    public final Expr right;
-
-    public Logical(Expr left, Token operator, Expr right) {
-      this.left = left;
-      this.operator = operator;
-      this.right = right;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitLogicalExpr(this);
-    }
-  }
-
-  public static class Set extends Expr {
-    public final Expr object;
-    public final Token name;
-    public final Expr value;
-
-    public Set(Expr object, Token name, Expr value) {
-      this.object = object;
-      this.name = name;
-      this.value = value;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitSetExpr(this);
-    }
-  }
-
-  public static class Super extends Expr {
-    public final Token keyword;
-    public final Token method;
-
-    public Super(Token keyword, Token method) {
-      this.keyword = keyword;
-      this.method = method;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitSuperExpr(this);
-    }
-  }
-
-  public static class This extends Expr {
-    public final Token keyword;
-
-    public This(Token keyword) {
-      this.keyword = keyword;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitThisExpr(this);
-    }
-  }
-
-  public static class Unary extends Expr {
-    public final Token operator;
-    public final Expr right;
-
-    public Unary(Token operator, Expr right) {
-      this.operator = operator;
-      this.right = right;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitUnaryExpr(this);
-    }
-  }
-
-  public static class Ternary extends Expr {
-    public final Expr condition;
-    public final Expr left;
-    public final Expr right;
-
-    public Ternary(Expr condition, Expr left, Expr right) {
-      this.condition = condition;
-      this.left = left;
-      this.right = right;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitTernaryExpr(this);
-    }
-  }
-
-  public static class Variable extends Expr {
-    public final Token name;
-
-    public Variable(Token name) {
-      this.name = name;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitVariableExpr(this);
-    }
-  }
-
-  public static class AnonFunction extends Expr {
-    public final List<Token> params;
-    public final List<Stmt> body;
-
-    public AnonFunction(List<Token> params, List<Stmt> body) {
-      this.params = params;
-      this.body = body;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitAnonFunctionExpr(this);
-    }
-  }
-
-}
+package com.gama.interpreter;
+
+import java.util.List;
+
+abstract class Expr {
+
+  public interface Visitor<R> {
+    R visitAssignExpr(Assign expr);
+    R visitBinaryExpr(Binary expr);
+    R visitCallExpr(Call expr);
+    R visitGetExpr(Get expr);
+    R visitGroupingExpr(Grouping expr);
+    R visitLiteralExpr(Literal expr);
+    R visitLogicalExpr(Logical expr);
+    R visitSetExpr(Set expr);
+    R visitSuperExpr(Super expr);
+    R visitThisExpr(This expr);
+    R visitUnaryExpr(Unary expr);
+    R visitTernaryExpr(Ternary expr);
+    R visitVariableExpr(Variable expr);
+    R visitAnonFunctionExpr(AnonFunction expr);
+    R visitArrayLiteralExpr(ArrayLiteral expr);
+    R visitIndexExpr(Index expr);
+    R visitIndexSetExpr(IndexSet expr);
+    R visitCompareConstantExpr(CompareConstant expr);
+    R visitIncrementExpr(Increment expr);
+    R visitCompoundAssignExpr(CompoundAssign expr);
+    R visitInvokeExpr(Invoke expr);
+  }
+
+  public abstract <R> R accept(Visitor<R> visitor);
+
+  public static class Assign extends Expr {
+    public final Token name;
+    public final Expr value;
+    public int depth = -1;
+    public boolean captured = false;
+    public GlobalEnvironment.Cell cell = null;
+
+    public Assign(Token name, Expr value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitAssignExpr(this);
+    }
+  }
+
+  public static class Binary extends Expr {
+    public final Expr left;
+    public final Token operator;
+    public final Expr right;
+    public boolean numeric = false;
+
+    public Binary(Expr left, Token operator, Expr right) {
+      this.left = left;
+      this.operator = operator;
+      this.right = right;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitBinaryExpr(this);
+    }
+  }
+
+  public static class Call extends Expr {
+    public final Expr callee;
+    public final Token paren;
+    public final List<Expr> arguments;
+
+    public Call(Expr callee, Token paren, List<Expr> arguments) {
+      this.callee = callee;
+      this.paren = paren;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitCallExpr(this);
+    }
+  }
+
+  public static class Get extends Expr {
+    public final Expr object;
+    public final Token name;
+
+    public Get(Expr object, Token name) {
+      this.object = object;
+      this.name = name;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitGetExpr(this);
+    }
+  }
+
+  public static class Grouping extends Expr {
+    public final Expr expression;
+
+    public Grouping(Expr expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitGroupingExpr(this);
+    }
+  }
+
+  public static class Literal extends Expr {
+    public final Object value;
+
+    public Literal(Object value) {
+      this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitLiteralExpr(this);
+    }
+  }
+
+  public static class Logical extends Expr {
+    public final Expr left;
+    public final Token operator;
+    public final Expr right;
+
+    public Logical(Expr left, Token operator, Expr right) {
+      this.left = left;
+      this.operator = operator;
+      this.right = right;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitLogicalExpr(this);
+    }
+  }
+
+  public static class Set extends Expr {
+    public final Expr object;
+    public final Token name;
+    public final Expr value;
+
+    public Set(Expr object, Token name, Expr value) {
+      this.object = object;
+      this.name = name;
+      this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSetExpr(this);
+    }
+  }
+
+  public static class Super extends Expr {
+    public final Token keyword;
+    public final Token method;
+    public int depth = -1;
+    public boolean captured = false;
+    public int thisDepth = -1;
+    public boolean thisCaptured = false;
+
+    public Super(Token keyword, Token method) {
+      this.keyword = keyword;
+      this.method = method;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitSuperExpr(this);
+    }
+  }
+
+  public static class This extends Expr {
+    public final Token keyword;
+    public int depth = -1;
+    public boolean captured = false;
+
+    public This(Token keyword) {
+      this.keyword = keyword;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitThisExpr(this);
+    }
+  }
+
+  public static class Unary extends Expr {
+    public final Token operator;
+    public final Expr right;
+    public boolean numeric = false;
+
+    public Unary(Token operator, Expr right) {
+      this.operator = operator;
+      this.right = right;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitUnaryExpr(this);
+    }
+  }
+
+  public static class Ternary extends Expr {
+    public final Expr condition;
+    public final Expr left;
+    public final Expr right;
+
+    public Ternary(Expr condition, Expr left, Expr right) {
+      this.condition = condition;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitTernaryExpr(this);
+    }
+  }
+
+  public static class Variable extends Expr {
+    public final Token name;
+    public int depth = -1;
+    public boolean captured = false;
+    public GlobalEnvironment.Cell cell = null;
+
+    public Variable(Token name) {
+      this.name = name;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitVariableExpr(this);
+    }
+  }
+
+  public static class AnonFunction extends Expr {
+    public final List<Token> params;
+    public final List<Stmt> body;
+    public Capture[] captures = new Capture[0];
+    public FunctionProfile profile = new FunctionProfile();
+
+    public AnonFunction(List<Token> params, List<Stmt> body) {
+      this.params = params;
+      this.body = body;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitAnonFunctionExpr(this);
+    }
+  }
+
+  public static class ArrayLiteral extends Expr {
+    public final Token bracket;
+    public final List<Expr> elements;
+
+    public ArrayLiteral(Token bracket, List<Expr> elements) {
+      this.bracket = bracket;
+      this.elements = elements;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitArrayLiteralExpr(this);
+    }
+  }
+
+  public static class Index extends Expr {
+    public final Expr object;
+    public final Token bracket;
+    public final Expr index;
+
+    public Index(Expr object, Token bracket, Expr index) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIndexExpr(this);
+    }
+  }
+
+  public static class IndexSet extends Expr {
+    public final Expr object;
+    public final Token bracket;
+    public final Expr index;
+    public final Expr value;
+
+    public IndexSet(Expr object, Token bracket, Expr index, Expr value) {
+      this.object = object;
+      this.bracket = bracket;
+      this.index = index;
+      this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIndexSetExpr(this);
+    }
+  }
+
+  public static class CompareConstant extends Expr {
+    public final Token name;
+    public final Token operator;
+    public final double constant;
+    public int depth = -1;
+    public boolean captured = false;
+    public GlobalEnvironment.Cell cell = null;
+
+    public CompareConstant(Token name, Token operator, double constant) {
+      this.name = name;
+      this.operator = operator;
+      this.constant = constant;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitCompareConstantExpr(this);
+    }
+  }
+
+  public static class Increment extends Expr {
+    public final Token name;
+    public final Token operator;
+    public final double delta;
+    public int depth = -1;
+    public boolean captured = false;
+    public GlobalEnvironment.Cell cell = null;
+
+    public Increment(Token name, Token operator, double delta) {
+      this.name = name;
+      this.operator = operator;
+      this.delta = delta;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIncrementExpr(this);
+    }
+  }
+
+  public static class CompoundAssign extends Expr {
+    public final Token name;
+    public final Token operator;
+    public final Expr operand;
+    public int depth = -1;
+    public boolean captured = false;
+    public GlobalEnvironment.Cell cell = null;
+
+    public CompoundAssign(Token name, Token operator, Expr operand) {
+      this.name = name;
+      this.operator = operator;
+      this.operand = operand;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitCompoundAssignExpr(this);
+    }
+  }
+
+  public static class Invoke extends Expr {
+    public final Expr object;
+    public final Token name;
+    public final Token paren;
+    public final List<Expr> arguments;
+
+    public Invoke(Expr object, Token name, Token paren, List<Expr> arguments) {
+      this.object = object;
+      this.name = name;
+      this.paren = paren;
+      this.arguments = arguments;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitInvokeExpr(this);
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+package com.gama.interpreter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+public class FileNatives {
+    private FileNatives() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("openLines", new NativeFunction("openLines", 1, (interpreter, arguments) -> {
+            String path = checkPath(arguments.get(0));
+            try {
+                return new LineReader(Paths.get(path));
+            } catch (IOException e) {
+                throw new NativeError("Cannot open " + path + ": " + e.getMessage());
+            }
+        }));
+        globals.define("readLine", new NativeFunction("readLine", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof LineReader)) {
+                throw new NativeError("Expected a line reader.");
+            }
+            try {
+                return ((LineReader) arguments.get(0)).readLine();
+            } catch (IOException e) {
+                throw new NativeError("Cannot read line: " + e.getMessage());
+            }
+        }));
+        globals.define("openRecords", new NativeFunction("openRecords", 2, (interpreter, arguments) -> {
+            String path = checkPath(arguments.get(0));
+            Object size = arguments.get(1);
+            if (!(size instanceof Double) || (double) size < 1 || (double) size != Math.floor((double) size)) {
+                throw new NativeError("Record size must be a positive integer.");
+            }
+            try {
+                return new RecordReader(Paths.get(path), (int) (double) size);
+            } catch (IOException e) {
+                throw new NativeError("Cannot open " + path + ": " + e.getMessage());
+            }
+        }));
+        globals.define("readRecord", new NativeFunction("readRecord", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof RecordReader)) {
+                throw new NativeError("Expected a record reader.");
+            }
+            try {
+                return ((RecordReader) arguments.get(0)).readRecord();
+            } catch (IOException e) {
+                throw new NativeError("Cannot read record: " + e.getMessage());
+            }
+        }));
+        globals.define("openWriter", new NativeFunction("openWriter", 1, (interpreter, arguments) -> {
+            String path = checkPath(arguments.get(0));
+            try {
+                FileChannel channel = FileChannel.open(Paths.get(path),
+                        StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+                OutputSink writer = OutputSink.onExit(channel, OutputSink.DEFAULT_BUFFER_SIZE);
+                interpreter.openWriters.add(writer);
+                return writer;
+            } catch (IOException e) {
+                throw new NativeError("Cannot open " + path + ": " + e.getMessage());
+            }
+        }));
+        globals.define("writeLine", new NativeFunction("writeLine", 2, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof OutputSink)) {
+                throw new NativeError("Expected a writer.");
+            }
+            try {
+                ((OutputSink) arguments.get(0)).println(Interpreter.stringify(arguments.get(1)));
+            } catch (UncheckedIOException e) {
+                throw new NativeError("Cannot write line: " + e.getCause().getMessage());
+            }
+            return null;
+        }));
+        globals.define("close", new NativeFunction("close", 1, (interpreter, arguments) -> {
+            Object file = arguments.get(0);
+            try {
+                if (file instanceof LineReader) {
+                    ((LineReader) file).close();
+                } else if (file instanceof RecordReader) {
+                    ((RecordReader) file).close();
+                } else if (file instanceof OutputSink) {
+                    interpreter.openWriters.remove(file);
+                    ((OutputSink) file).close();
+                } else {
+                    throw new NativeError("Can only close a reader or a writer.");
+                }
+            } catch (IOException e) {
+                throw new NativeError("Cannot close file: " + e.getMessage());
+            } catch (UncheckedIOException e) {
+                throw new NativeError("Cannot close file: " + e.getCause().getMessage());
+            }
+            return null;
+        }));
+    }
+
+    private static String checkPath(Object path) {
+        if (!(path instanceof String)) {
+            throw new NativeError("File path must be a string.");
+        }
+        return (String) path;
+    }
+}
@@ -0,0 +1,131 @@
+package com.gama.interpreter;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * What calls to one function declaration have looked like: how often it ran, how many loop iterations its body made
+ * and which types each parameter received. Every closure created from the declaration shares its profile, and
+ * {@link ProfileStore} carries it over to the next run of the same script. Counters are updated without
+ * synchronization, so under concurrent calls they are only approximate; that is harmless because every specialization
+ * they lead to is guarded.
+ * <p>
+ * Functions start out running their generic body. Once one turns hot, a specialized copy is built on a background
+ * thread while calls keep running the generic body, and calls use the copy from the moment it is installed.
+ */
+public class FunctionProfile {
+    static final int NUMBER = 1;
+    static final int STRING = 2;
+    static final int BOOLEAN = 4;
+    static final int OTHER = 8;
+
+    /**
+     * Calls plus loop iterations after which a function counts as hot.
+     */
+    static final long HOT = 1000;
+
+    private static final ExecutorService COMPILER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lox-compiler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Specialization {
+        public final int guard;
+        public final List<Stmt> body;
+
+        public Specialization(int guard, List<Stmt> body) {
+            this.guard = guard;
+            this.body = body;
+        }
+    }
+
+    long calls;
+    long backEdges;
+    int[] argumentTypes = new int[0];
+    volatile boolean warm;
+    private volatile boolean queued;
+    private volatile Specialization specialization;
+
+    /**
+     * Records a call and picks the body to run for it: a specialized copy when one is installed and the arguments pass
+     * its guard, otherwise {@code body}. A call that fails the guard throws the copy away; the function may then be
+     * specialized again for the argument types seen since. A function that was hot in an earlier run is specialized
+     * right away, before its first call runs.
+     */
+    List<Stmt> enter(List<Token> params, List<Stmt> body, List<Object> arguments) {
+        calls++;
+        int numeric = record(arguments);
+        if (warm) {
+            warm = false;
+            queued = true;
+            specialize(params, body);
+        } else if (!queued && calls + backEdges >= HOT) {
+            queued = true;
+            COMPILER.execute(() -> specialize(params, body));
+        }
+        Specialization specialization = this.specialization;
+        if (specialization == null) {
+            return body;
+        }
+        if ((numeric & specialization.guard) == specialization.guard) {
+            return specialization.body;
+        }
+        this.specialization = null;
+        queued = false;
+        InterpreterMetrics.DEOPTIMIZATIONS.increment();
+        return body;
+    }
+
+    private int record(List<Object> arguments) {
+        int[] types = argumentTypes;
+        if (types.length != arguments.size()) {
+            argumentTypes = types = new int[arguments.size()];
+        }
+        int numeric = 0;
+        for (int i = 0; i < types.length; i++) {
+            int type = typeOf(arguments.get(i));
+            types[i] |= type;
+            if (type == NUMBER && i < 32) {
+                numeric |= 1 << i;
+            }
+        }
+        return numeric;
+    }
+
+    private static int typeOf(Object value) {
+        if (value instanceof Double) {
+            return NUMBER;
+        }
+        if (value instanceof String) {
+            return STRING;
+        }
+        if (value instanceof Boolean) {
+            return BOOLEAN;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Builds a copy of the body whose arithmetic on parameters that have only ever received numbers skips type checks.
+     */
+    private void specialize(List<Token> params, List<Stmt> body) {
+        int[] types = argumentTypes;
+        int numericParams = 0;
+        for (int i = 0; i < types.length && i < 32; i++) {
+            if (types[i] == NUMBER) {
+                numericParams |= 1 << i;
+            }
+        }
+        if (numericParams == 0) {
+            return;
+        }
+        List<Stmt> copy = new Optimizer().optimize(body);
+        int guard = new TypeInferrer().specialize(params, copy, numericParams);
+        if (guard != 0) {
+            specialization = new Specialization(guard, copy);
+            InterpreterMetrics.SPECIALIZATIONS.increment();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.gama.interpreter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The outermost scope, which every coroutine of a session reads and writes. Each name gets one cell, allocated the
+ * first time it is defined or referenced and never replaced, so syntax nodes can hold on to it. Reads never lock.
+ */
+public class GlobalEnvironment extends Environment {
+    private static final Object UNDEFINED = new Object();
+
+    static final class Cell {
+        private final GlobalEnvironment owner;
+        private volatile Object value = UNDEFINED;
+
+        private Cell(GlobalEnvironment owner) {
+            this.owner = owner;
+        }
+
+        Object get(Token name) {
+            Object current = value;
+            if (current == UNDEFINED) {
+                throw new RuntimeError(name, "Undefined variable name: " + name.lexeme + ".");
+            }
+            return current;
+        }
+
+        void assign(Token name, Object value) {
+            if (this.value == UNDEFINED) {
+                throw new RuntimeError(name, "Undefined variable " + name.lexeme + ".");
+            }
+            this.value = value;
+        }
+    }
+
+    private final ConcurrentMap<String, Cell> cells = new ConcurrentHashMap<>();
+
+    Cell cell(String name) {
+        Cell cell = cells.get(name);
+        return cell != null ? cell : cells.computeIfAbsent(name, key -> new Cell(this));
+    }
+
+    /**
+     * Whether a cell cached on a syntax node belongs to this environment. Compiled programs can be shared between
+     * sessions, so a node may still point at another session's cell.
+     */
+    boolean owns(Cell cell) {
+        return cell != null && cell.owner == this;
+    }
+
+    /**
+     * Returns the value of a global, or null if it is nil or was never defined.
+     */
+    Object valueOf(String name) {
+        Object value = cell(name).value;
+        return value == UNDEFINED ? null : value;
+    }
+
+    @Override
+    public void define(String name) {
+        cell(name).value = null;
+    }
+
+    @Override
+    public void define(String name, Object value) {
+        cell(name).value = value;
+    }
+
+    @Override
+    public Object get(Token name) {
+        return cell(name.lexeme).get(name);
+    }
+
+    @Override
+    public void assign(Token name, Object value) {
+        cell(name.lexeme).assign(name, value);
+    }
+}
@@ -0,0 +1,156 @@
+package com.gama.interpreter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Watches a running script's source file and, whenever it changes, brings its changed top-level functions and
+ * classes into the session without running any other top-level code again. Declarations are compared by their
+ * tokens, so edits to comments and whitespace reload nothing.
+ */
+public class HotReloader implements Closeable {
+    private static final long SETTLE_MILLIS = 50;
+
+    private final Interpreter interpreter;
+    private final Path path;
+    private final PrintStream err;
+    private final WatchService watcher;
+    private Map<String, String> fingerprints;
+
+    HotReloader(Interpreter interpreter, Path path, PrintStream err) throws IOException {
+        this.interpreter = interpreter;
+        this.path = path.toAbsolutePath();
+        this.err = err;
+        this.fingerprints = fingerprints(read(), new ErrorReporter(err));
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.path.getParent().register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(this::watch, "gamajlox-reload");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean touched = key.pollEvents().stream()
+                        .anyMatch(event -> path.getFileName().equals(event.context()));
+                key.reset();
+                if (touched) {
+                    Thread.sleep(SETTLE_MILLIS);
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+        }
+    }
+
+    private void reload() {
+        String source;
+        try {
+            source = read();
+        } catch (IOException e) {
+            err.println("Could not reload " + path + ": " + e.getMessage());
+            return;
+        }
+        ErrorReporter reporter = new ErrorReporter(err);
+        Map<String, String> current = fingerprints(source, reporter);
+        Program program = Program.compile(source, false, reporter, interpreter.globals);
+        if (program == null) {
+            err.println("Kept the running version of " + path + ".");
+            return;
+        }
+        List<String> reloaded = new ArrayList<>();
+        try {
+            for (Stmt statement : program.statements) {
+                if (statement instanceof Stmt.Function) {
+                    Stmt.Function function = (Stmt.Function) statement;
+                    if (changed(function.name.lexeme, current)) {
+                        interpreter.reloadFunction(function);
+                        reloaded.add(function.name.lexeme);
+                    }
+                } else if (statement instanceof Stmt.Class) {
+                    Stmt.Class loxClass = (Stmt.Class) statement;
+                    if (changed(loxClass.name.lexeme, current)) {
+                        interpreter.reloadClass(loxClass);
+                        reloaded.add(loxClass.name.lexeme);
+                    }
+                }
+            }
+        } catch (RuntimeError error) {
+            reporter.runtimeError(error);
+        }
+        fingerprints = current;
+        if (!reloaded.isEmpty()) {
+            err.println("Reloaded " + String.join(", ", reloaded) + ".");
+        }
+    }
+
+    private boolean changed(String name, Map<String, String> current) {
+        return !Objects.equals(fingerprints.get(name), current.get(name));
+    }
+
+    private String read() throws IOException {
+        return new String(Files.readAllBytes(path), Charset.defaultCharset());
+    }
+
+    /**
+     * Maps the name of every top-level function and class declaration to the text of its tokens.
+     */
+    private static Map<String, String> fingerprints(String source, ErrorReporter reporter) {
+        List<Token> tokens = new Scanner(source, reporter).scanTokens();
+        Map<String, String> fingerprints = new HashMap<>();
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Token token = tokens.get(i);
+            boolean declares = token.type == TokenType.FUN || token.type == TokenType.CLASS;
+            if (depth == 0 && declares && i + 1 < tokens.size() && tokens.get(i + 1).type == TokenType.IDENTIFIER) {
+                StringBuilder fingerprint = new StringBuilder();
+                int end = endOfDeclaration(tokens, i);
+                for (int j = i; j <= end; j++) {
+                    fingerprint.append(tokens.get(j).type).append(' ').append(tokens.get(j).lexeme).append('\n');
+                }
+                fingerprints.put(tokens.get(i + 1).lexeme, fingerprint.toString());
+                i = end;
+            } else if (token.type == TokenType.LEFT_BRACE) {
+                depth++;
+            } else if (token.type == TokenType.RIGHT_BRACE) {
+                depth--;
+            }
+        }
+        return fingerprints;
+    }
+
+    private static int endOfDeclaration(List<Token> tokens, int start) {
+        int depth = 0;
+        for (int i = start; i < tokens.size(); i++) {
+            TokenType type = tokens.get(i).type;
+            if (type == TokenType.LEFT_BRACE) {
+                depth++;
+            } else if (type == TokenType.RIGHT_BRACE && --depth == 0) {
+                return i;
+            }
+        }
+        return tokens.size() - 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+    }
+}
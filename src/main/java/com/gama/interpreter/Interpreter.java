@@ -1,419 +1,948 @@
-package com.gama.interpreter;
-
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
-import java.util.stream.Collectors;
-
-public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
-    private static class BreakInterrupt extends RuntimeException {
-    }
-
-    public final Environment globals = new Environment();
-    private Environment environment = globals;
-    private final Map<Expr, Integer> locals = new HashMap<>();
-
-    public Interpreter() {
-        globals.define("clock", new LoxCallable() {
-            @Override
-            public int arity() {
-                return 0;
-            }
-
-            @Override
-            public Object call(Interpreter interpreter, List<Object> arguments) {
-                return (double) System.currentTimeMillis() / 1000.0;
-            }
-
-            @Override
-            public String toString() {
-                return "<native fn>";
-            }
-        });
-    }
-
-    public void resolve(Expr expr, int depth) {
-        locals.put(expr, depth);
-    }
-
-    public void interpret(List<Stmt> statements) {
-        try {
-            for (Stmt statement : statements) {
-                evaluate(statement);
-            }
-        } catch (RuntimeError e) {
-            Gamajlox.runtimeError(e);
-        } catch (Return returnException) {
-        }
-    }
-
-    @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
-        if (stmt.initializer == null) {
-            environment.define(stmt.name.lexeme);
-        } else {
-            environment.define(stmt.name.lexeme, evaluate(stmt.initializer));
-        }
-        return null;
-    }
-
-    @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
-        try {
-            while (isTruthy(evaluate(stmt.condition))) {
-                evaluate(stmt.body);
-            }
-        } catch (BreakInterrupt e) {
-        }
-        return null;
-    }
-
-    @Override
-    public Void visitBreakStmt(Stmt.Break stmt) {
-        throw new BreakInterrupt();
-    }
-
-    @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        executeBlock(stmt.statements, new Environment(environment));
-        return null;
-    }
-
-    @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
-        Object superclass = null;
-        if (stmt.superclass != null) {
-            superclass = evaluate(stmt.superclass);
-            if (!(superclass instanceof LoxClass)) {
-                throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
-            }
-        }
-
-        environment.define(stmt.name.lexeme);
-
-        if (stmt.superclass != null) {
-            environment = new Environment(environment);
-            environment.define("super", superclass);
-        }
-
-        Map<String, LoxFunction> methods = new HashMap<>();
-        for (Stmt.Function method : stmt.methods) {
-            LoxFunction function = new LoxFunction(method, "init".equals(method.name.lexeme), environment);
-            methods.put(method.name.lexeme, function);
-        }
-        Map<String, LoxFunction> getters = new HashMap<>();
-        for (Stmt.Function getter : stmt.getters) {
-            LoxFunction function = new LoxFunction(getter, false, environment);
-            getters.put(getter.name.lexeme, function);
-        }
-        Map<String, LoxFunction> staticMethods = new HashMap<>();
-        for (Stmt.Function staticMethod : stmt.staticMethods) {
-            LoxFunction function = new LoxFunction(staticMethod, false, environment);
-            staticMethods.put(staticMethod.name.lexeme, function);
-        }
-
-        LoxRegularClass loxRegularClass = new LoxRegularClass(stmt.name.lexeme, (LoxClass) superclass, methods, getters, staticMethods);
-
-        if (superclass != null) {
-            environment = environment.enclosing;
-        }
-
-        environment.assign(stmt.name, loxRegularClass);
-        return null;
-    }
-
-    public Void executeBlock(List<Stmt> statements, Environment newEnvironment) {
-        Environment enclosingEnvironment = environment;
-        try {
-            environment = newEnvironment;
-            for (Stmt statement : statements) {
-                evaluate(statement);
-            }
-            return null;
-        } finally {
-            environment = enclosingEnvironment;
-        }
-    }
-
-    @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
-        evaluate(stmt.expression);
-        return null;
-    }
-
-    @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        LoxFunction function = new LoxFunction(stmt, false, environment);
-        environment.define(stmt.name.lexeme, function);
-        return null;
-    }
-
-    @Override
-    public Void visitIfStmt(Stmt.If stmt) {
-        if (isTruthy(evaluate(stmt.condition))) {
-            evaluate(stmt.thenBranch);
-        } else if (stmt.elseBranch != null) {
-            evaluate(stmt.elseBranch);
-        }
-        return null;
-    }
-
-    @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
-        Object expressionInterpreted = evaluate(stmt.expression);
-        System.out.println(stringify(expressionInterpreted));
-        return null;
-    }
-
-    @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
-        Object returnValue = stmt.value != null ? evaluate(stmt.value) : null;
-        throw new Return(returnValue);
-    }
-
-    @Override
-    public Object visitAssignExpr(Expr.Assign expr) {
-        Object value = evaluate(expr.value);
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            environment.assignAt(distance, expr.name, value);
-        } else {
-            globals.assign(expr.name, value);
-        }
-        return value;
-    }
-
-    @Override
-    public Object visitBinaryExpr(Expr.Binary expr) {
-        Object left = evaluate(expr.left);
-        Object right = evaluate(expr.right);
-
-        switch (expr.operator.type) {
-            case MINUS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left - (double) right;
-            case PLUS:
-                if (left instanceof Double && right instanceof Double) {
-                    return (double) left + (double) right;
-                }
-                if (left instanceof String || right instanceof String) {
-                    return stringify(left) + stringify(right);
-                }
-                throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
-            case SLASH:
-                checkNumberOperands(expr.operator, left, right);
-                if ((double) right == 0) {
-                    throw new RuntimeError(expr.operator, "Division by zero is not allowed");
-                }
-                return (double) left / (double) right;
-            case STAR:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left * (double) right;
-            case GREATER:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left > (double) right;
-            case GREATER_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left >= (double) right;
-            case LESS:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left < (double) right;
-            case LESS_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return (double) left <= (double) right;
-            case EQUAL_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return isEqual(left, right);
-            case BANG_EQUAL:
-                checkNumberOperands(expr.operator, left, right);
-                return !isEqual(left, right);
-            default:
-                throw new RuntimeError(expr.operator, "Unknown operator");
-        }
-    }
-
-    @Override
-    public Object visitCallExpr(Expr.Call expr) {
-        Object callee = evaluate(expr.callee);
-        List<Object> arguments = expr.arguments.stream()
-                .map(this::evaluate)
-                .collect(Collectors.toList());
-
-        if (!(callee instanceof LoxCallable)) {
-            throw new RuntimeError(expr.paren, "Can only call functions and classes.");
-        }
-
-        LoxCallable function = (LoxCallable) callee;
-        if (function.arity() != arguments.size()) {
-            throw new RuntimeError(expr.paren, "Expected " + arguments.size() + " arguments, got " + function.arity() + " instead.");
-        }
-        return function.call(this, arguments);
-    }
-
-    @Override
-    public Object visitGetExpr(Expr.Get expr) {
-        Object obj = evaluate(expr.object);
-        if (obj instanceof LoxInstance) {
-            return ((LoxInstance) obj).get(expr.name, this);
-        }
-        throw new RuntimeError(expr.name, "Tried to access a property of something other than an instance.");
-    }
-
-    @Override
-    public Object visitGroupingExpr(Expr.Grouping expr) {
-        return evaluate(expr.expression);
-    }
-
-    @Override
-    public Object visitLiteralExpr(Expr.Literal expr) {
-        return expr.value;
-    }
-
-    @Override
-    public Object visitLogicalExpr(Expr.Logical expr) {
-        Object left = evaluate(expr.left);
-
-        switch (expr.operator.type) {
-            case OR:
-                if (isTruthy(left)) {
-                    return left;
-                }
-                break;
-            case AND:
-                if (!isTruthy(left)) {
-                    return left;
-                }
-                break;
-            default:
-                throw new RuntimeError(expr.operator, "Unknown logical operator.");
-        }
-
-        return evaluate(expr.right);
-    }
-
-    @Override
-    public Object visitSetExpr(Expr.Set expr) {
-        Object obj = evaluate(expr.object);
-
-        if (!(obj instanceof LoxInstance)) {
-            throw new RuntimeError(expr.name, "Can't set a field inside an object that is not an instance.");
-        }
-
-        Object value = evaluate(expr.value);
-        ((LoxInstance) obj).set(expr.name, value);
-        return value;
-    }
-
-    @Override
-    public Object visitSuperExpr(Expr.Super expr) {
-        int distance = locals.get(expr);
-        LoxClass superclass = (LoxClass) environment.getAt(distance, "super");
-        LoxInstance instance = (LoxInstance) environment.getAt(distance - 1, "this");
-        LoxFunction method = superclass.findMethod(expr.method.lexeme);
-        if (method == null) {
-            method = superclass.findGetter(expr.method.lexeme);
-        }
-        if (method == null) {
-            throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
-        }
-        return method.bind(instance);
-    }
-
-    @Override
-    public Object visitThisExpr(Expr.This expr) {
-        return lookUpVariable(expr.keyword, expr);
-    }
-
-    @Override
-    public Object visitUnaryExpr(Expr.Unary expr) {
-        Object right = evaluate(expr.right);
-        switch (expr.operator.type) {
-            case MINUS:
-                checkNumberOperand(expr.operator, right);
-                return -(double) right;
-            case BANG:
-                return !isTruthy(right);
-            default:
-                throw new RuntimeError(expr.operator, "Unknown operator");
-        }
-    }
-
-    @Override
-    public Object visitTernaryExpr(Expr.Ternary expr) {
-        Object condition = evaluate(expr.condition);
-        return isTruthy(condition) ? evaluate(expr.left) : evaluate(expr.right);
-    }
-
-    @Override
-    public Object visitVariableExpr(Expr.Variable expr) {
-        return lookUpVariable(expr.name, expr);
-    }
-
-    private Object lookUpVariable(Token name, Expr expr) {
-        Integer distance = locals.get(expr);
-        if (distance != null) {
-            return environment.getAt(distance, name.lexeme);
-        } else {
-            return globals.get(name);
-        }
-    }
-
-    @Override
-    public Object visitAnonFunctionExpr(Expr.AnonFunction expr) {
-        return new LoxFunction(expr, environment);
-    }
-
-    private Object evaluate(Expr expr) {
-        return expr.accept(this);
-    }
-
-    private void evaluate(Stmt stmt) {
-        stmt.accept(this);
-    }
-
-    private void checkNumberOperand(Token operator, Object operand) {
-        if (operand instanceof Double) {
-            return;
-        }
-        throw new RuntimeError(operator, "Operand must be a number");
-    }
-
-    private void checkNumberOperands(Token operator, Object left, Object right) {
-        if (left instanceof Double && right instanceof Double) {
-            return;
-        }
-
-        throw new RuntimeError(operator, "Operands must be numbers.");
-    }
-
-    private boolean isTruthy(Object obj) {
-        if (obj == null) {
-            return false;
-        }
-        if (obj instanceof Boolean) {
-            return (boolean) obj;
-        }
-        return true;
-    }
-
-    private boolean isEqual(Object a, Object b) {
-        return Objects.equals(a, b);
-    }
-
-    private String stringify(Object obj) {
-        if (obj == null) {
-            return "nil";
-        }
-
-        if (obj instanceof Double) {
-            String text = obj.toString();
-            if (text.endsWith(".0")) {
-                return text.substring(0, text.length() - 2);
-            }
-            return text;
-        }
-
-        return obj.toString();
-    }
-}
+package com.gama.interpreter;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
+    private static class BreakInterrupt extends RuntimeException {
+    }
+
+    public final GlobalEnvironment globals;
+    private final ErrorReporter reporter;
+    private final OutputSink out;
+    private Environment environment;
+    private Stmt.Block loopFrameBlock;
+    private Environment loopFrame;
+    private Budget budget = Budget.UNLIMITED;
+    private Budget.Meter meter;
+    private int stepsUntilCheck = Budget.CHECK_INTERVAL;
+    private long allocations;
+    private long allocationsCharged;
+    private long statementCount;
+    private long callCount;
+    private long frameCount;
+    private long instanceCount;
+    private final Set<Path> loadedModules;
+    private Path moduleDirectory;
+    /**
+     * The profile of the function whose body is running, which counts its loop iterations; null at the top level.
+     */
+    FunctionProfile profile;
+    /**
+     * Instrumented copies of function bodies that calls run instead of their own while a tracer is attached, keyed by
+     * the profile of the function's declaration. Shared with forked interpreters, so it covers the whole session.
+     */
+    final Map<FunctionProfile, List<Stmt>> tracedBodies;
+    /**
+     * Writers opened by scripts of this session and not closed yet, which the session flushes after every run.
+     */
+    final Set<OutputSink> openWriters;
+
+    public Interpreter(ErrorReporter reporter, OutputSink out) {
+        this.globals = new GlobalEnvironment();
+        this.reporter = reporter;
+        this.out = out;
+        this.environment = globals;
+        this.loadedModules = ConcurrentHashMap.newKeySet();
+        this.moduleDirectory = Paths.get("").toAbsolutePath();
+        this.tracedBodies = new ConcurrentHashMap<>();
+        this.openWriters = ConcurrentHashMap.newKeySet();
+        InterpreterMetrics.init();
+        globals.define("clock", new LoxCallable() {
+            @Override
+            public int arity() {
+                return 0;
+            }
+
+            @Override
+            public Object call(Interpreter interpreter, List<Object> arguments) {
+                return (double) System.currentTimeMillis() / 1000.0;
+            }
+
+            @Override
+            public String toString() {
+                return "<native fn>";
+            }
+        });
+        Coroutines.register(globals);
+        Parallel.register(globals);
+        ArrayNatives.register(globals);
+        MapNatives.register(globals);
+        FileNatives.register(globals);
+        MemoNatives.register(globals);
+        BenchNatives.register(globals);
+    }
+
+    private Interpreter(Interpreter parent) {
+        this.globals = parent.globals;
+        this.reporter = parent.reporter;
+        this.out = parent.out;
+        this.environment = globals;
+        this.budget = parent.budget;
+        this.meter = parent.meter;
+        this.loadedModules = parent.loadedModules;
+        this.moduleDirectory = parent.moduleDirectory;
+        this.tracedBodies = parent.tracedBodies;
+        this.openWriters = parent.openWriters;
+    }
+
+    /**
+     * Returns an interpreter with its own frame stack over the same globals and heap, for running Lox code on another thread.
+     */
+    public Interpreter fork() {
+        return new Interpreter(this);
+    }
+
+    public void setBudget(Budget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Makes imports in the scripts run next resolve relative to {@code script}, which itself will not be imported.
+     */
+    public void setScriptPath(Path script) {
+        Path path = script.toAbsolutePath().normalize();
+        loadedModules.add(path);
+        moduleDirectory = path.getParent();
+    }
+
+    public void interpret(List<Stmt> statements) {
+        Modules.prefetch(moduleDirectory, statements);
+        meter = budget.start();
+        stepsUntilCheck = Budget.CHECK_INTERVAL;
+        allocations = 0;
+        allocationsCharged = 0;
+        try {
+            for (Stmt statement : statements) {
+                evaluate(statement);
+            }
+        } catch (RuntimeError e) {
+            out.flush();
+            reporter.runtimeError(e);
+        } catch (Return returnException) {
+        } finally {
+            flushMetrics();
+        }
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (stmt.initializer == null) {
+            environment.define(stmt.name.lexeme);
+        } else {
+            environment.define(stmt.name.lexeme, evaluate(stmt.initializer));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        Stmt.Block enclosingFrameBlock = loopFrameBlock;
+        Environment enclosingFrame = loopFrame;
+        loopFrameBlock = reusableFrameBlock(stmt.body);
+        loopFrame = null;
+        FunctionProfile profile = this.profile;
+        Stmt.While loop = stmt;
+        long iterations = 0;
+        try {
+            while (true) {
+                if (profile == null && ++iterations == OnStackReplacement.THRESHOLD) {
+                    Stmt.While replacement = OnStackReplacement.enter(stmt, environment);
+                    if (replacement != null) {
+                        InterpreterMetrics.LOOP_REPLACEMENTS.increment();
+                        loop = replacement;
+                        loopFrameBlock = reusableFrameBlock(loop.body);
+                        loopFrame = null;
+                    }
+                }
+                if (!isTruthy(evaluate(loop.condition))) {
+                    break;
+                }
+                step(stmt.keyword);
+                if (profile != null) {
+                    profile.backEdges++;
+                }
+                evaluate(loop.body);
+            }
+        } catch (BreakInterrupt e) {
+        } finally {
+            loopFrameBlock = enclosingFrameBlock;
+            loopFrame = enclosingFrame;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the block of a loop body whose frame can be reused from one iteration to the next: the body itself,
+     * or the user's block inside the scope-less block that for loops wrap around body and increment.
+     */
+    private static Stmt.Block reusableFrameBlock(Stmt body) {
+        if (!(body instanceof Stmt.Block)) {
+            return null;
+        }
+        Stmt.Block block = (Stmt.Block) body;
+        if (block.reusable) {
+            return block;
+        }
+        if (!block.scoped && !block.statements.isEmpty() && block.statements.get(0) instanceof Stmt.Block) {
+            Stmt.Block inner = (Stmt.Block) block.statements.get(0);
+            return inner.reusable ? inner : null;
+        }
+        return null;
+    }
+
+    /**
+     * Runs a module's top-level code in the importing session's globals, the first time the session imports it.
+     */
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        Path path = Modules.resolve(moduleDirectory, stmt);
+        if (loadedModules.contains(path)) {
+            return null;
+        }
+        Program module = Modules.load(path, stmt.path);
+        if (!loadedModules.add(path)) {
+            return null;
+        }
+        Path importingDirectory = moduleDirectory;
+        moduleDirectory = path.getParent();
+        try {
+            for (Stmt statement : module.statements) {
+                evaluate(statement);
+            }
+        } finally {
+            moduleDirectory = importingDirectory;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitTracedStmt(Stmt.Traced stmt) {
+        stmt.tracer.line(stmt.line);
+        try {
+            evaluate(stmt.statement);
+        } catch (RuntimeError error) {
+            stmt.tracer.exception(error);
+            throw error;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitTracedCallStmt(Stmt.TracedCall stmt) {
+        stmt.tracer.enter(stmt.name, stmt.line);
+        try {
+            evaluate(stmt.body);
+        } finally {
+            stmt.tracer.exit(stmt.name);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        throw new BreakInterrupt();
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (!stmt.scoped) {
+            for (Stmt statement : stmt.statements) {
+                evaluate(statement);
+            }
+            return null;
+        }
+        if (stmt == loopFrameBlock) {
+            if (loopFrame == null || loopFrame.enclosing != environment) {
+                frameCount++;
+                loopFrame = new Environment(environment);
+            }
+            executeBlock(stmt.statements, loopFrame);
+            return null;
+        }
+        allocate();
+        frameCount++;
+        executeBlock(stmt.statements, new Environment(environment));
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        Object superclass = null;
+        if (stmt.superclass != null) {
+            superclass = evaluate(stmt.superclass);
+            if (!(superclass instanceof LoxClass)) {
+                throw new RuntimeError(stmt.superclass.name, "Superclass must be a class.");
+            }
+        }
+
+        environment.define(stmt.name.lexeme);
+
+        if (stmt.superclass != null) {
+            environment = new Environment(environment);
+            environment.define("super", superclass);
+        }
+
+        LoxRegularClass loxRegularClass = new LoxRegularClass(stmt.name.lexeme, (LoxClass) superclass,
+                functions(stmt.methods, true), functions(stmt.getters, false), functions(stmt.staticMethods, false));
+
+        if (superclass != null) {
+            environment = environment.enclosing;
+        }
+
+        environment.assign(stmt.name, loxRegularClass);
+        return null;
+    }
+
+    private Map<String, LoxFunction> functions(List<Stmt.Function> declarations, boolean isMethodTable) {
+        Map<String, LoxFunction> functions = new HashMap<>();
+        for (Stmt.Function declaration : declarations) {
+            boolean isInitializer = isMethodTable && "init".equals(declaration.name.lexeme);
+            functions.put(declaration.name.lexeme, new LoxFunction(declaration, isInitializer, capture(declaration.captures)));
+        }
+        return functions;
+    }
+
+    /**
+     * Brings a changed top-level function into the running program. A function already defined under that name takes
+     * the new body in place; otherwise the declaration is executed as usual.
+     */
+    void reloadFunction(Stmt.Function stmt) {
+        Object current = globals.valueOf(stmt.name.lexeme);
+        if (current instanceof LoxFunction) {
+            ((LoxFunction) current).redefine(stmt);
+        } else {
+            evaluate(stmt);
+        }
+    }
+
+    /**
+     * Brings a changed top-level class into the running program. When the class already exists with the same
+     * superclass its method tables are replaced, which existing instances see; otherwise the declaration is executed
+     * as usual and only new instances get the new class.
+     */
+    void reloadClass(Stmt.Class stmt) {
+        Object current = globals.valueOf(stmt.name.lexeme);
+        Object superclass = stmt.superclass == null ? null : evaluate(stmt.superclass);
+        if (!(current instanceof LoxRegularClass) || ((LoxRegularClass) current).superclass != superclass) {
+            evaluate(stmt);
+            return;
+        }
+        Environment enclosingEnvironment = environment;
+        try {
+            if (superclass != null) {
+                environment = new Environment(environment);
+                environment.define("super", superclass);
+            }
+            ((LoxRegularClass) current).redefine(functions(stmt.methods, true), functions(stmt.getters, false),
+                    functions(stmt.staticMethods, false));
+        } finally {
+            environment = enclosingEnvironment;
+        }
+    }
+
+    public Void executeBlock(List<Stmt> statements, Environment newEnvironment) {
+        Environment enclosingEnvironment = environment;
+        try {
+            environment = newEnvironment;
+            for (Stmt statement : statements) {
+                evaluate(statement);
+            }
+            return null;
+        } finally {
+            newEnvironment.closeUpvalues();
+            environment = enclosingEnvironment;
+        }
+    }
+
+    /**
+     * Builds the environment a new function closes over: just the variables it captures, as upvalues, rather than
+     * the whole chain of scopes it was declared in.
+     */
+    private Environment capture(Capture[] captures) {
+        allocate();
+        if (captures.length == 0) {
+            return null;
+        }
+        Environment captured = new Environment();
+        for (Capture capture : captures) {
+            captured.define(capture.name, capture.fromEnclosingCaptures
+                    ? environment.getAt(capture.depth, capture.name)
+                    : environment.captureAt(capture.depth, capture.name));
+        }
+        return captured;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        evaluate(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        LoxFunction function = new LoxFunction(stmt, false, capture(stmt.captures));
+        environment.define(stmt.name.lexeme, function);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        if (isTruthy(evaluate(stmt.condition))) {
+            evaluate(stmt.thenBranch);
+        } else if (stmt.elseBranch != null) {
+            evaluate(stmt.elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        Object expressionInterpreted = evaluate(stmt.expression);
+        try {
+            out.println(stringify(expressionInterpreted));
+        } catch (UncheckedIOException e) {
+            throw new RuntimeError(new Token(TokenType.PRINT, "print", null, stmt.line),
+                    "Cannot write output: " + e.getCause().getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        Object returnValue = stmt.value != null ? evaluate(stmt.value) : null;
+        throw new Return(returnValue);
+    }
+
+    @Override
+    public Object visitAssignExpr(Expr.Assign expr) {
+        Object value = evaluate(expr.value);
+        GlobalEnvironment.Cell cell = expr.cell;
+        if (expr.depth == -1 && !globals.owns(cell)) {
+            expr.cell = cell = globals.cell(expr.name.lexeme);
+        }
+        assignVariable(expr.name, expr.depth, expr.captured, cell, value);
+        return value;
+    }
+
+    private void assignVariable(Token name, int depth, boolean captured, GlobalEnvironment.Cell cell, Object value) {
+        if (depth == -1) {
+            cell.assign(name, value);
+        } else if (captured) {
+            environment.assignCapturedAt(depth, name, value);
+        } else {
+            environment.assignAt(depth, name, value);
+        }
+    }
+
+    @Override
+    public Object visitBinaryExpr(Expr.Binary expr) {
+        Object left = evaluate(expr.left);
+        Object right = evaluate(expr.right);
+        if (expr.numeric) {
+            return numericOperation(expr.operator, (double) left, (double) right);
+        }
+        return binaryOperation(expr.operator, left, right);
+    }
+
+    /**
+     * Operations whose operands the {@link TypeInferrer} proved to be numbers, so no type checks are needed.
+     */
+    private Object numericOperation(Token operator, double left, double right) {
+        switch (operator.type) {
+            case MINUS:
+                return left - right;
+            case PLUS:
+                return left + right;
+            case SLASH:
+                if (right == 0) {
+                    throw new RuntimeError(operator, "Division by zero is not allowed");
+                }
+                return left / right;
+            case STAR:
+                return left * right;
+            case GREATER:
+                return left > right;
+            case GREATER_EQUAL:
+                return left >= right;
+            case LESS:
+                return left < right;
+            case LESS_EQUAL:
+                return left <= right;
+            case EQUAL_EQUAL:
+                return Double.doubleToLongBits(left) == Double.doubleToLongBits(right);
+            case BANG_EQUAL:
+                return Double.doubleToLongBits(left) != Double.doubleToLongBits(right);
+            default:
+                throw new RuntimeError(operator, "Unknown operator");
+        }
+    }
+
+    private Object binaryOperation(Token operator, Object left, Object right) {
+        switch (operator.type) {
+            case MINUS:
+                checkNumberOperands(operator, left, right);
+                return (double) left - (double) right;
+            case PLUS:
+                if (left instanceof Double && right instanceof Double) {
+                    return (double) left + (double) right;
+                }
+                if (left instanceof String || right instanceof String) {
+                    return stringify(left) + stringify(right);
+                }
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            case SLASH:
+                checkNumberOperands(operator, left, right);
+                if ((double) right == 0) {
+                    throw new RuntimeError(operator, "Division by zero is not allowed");
+                }
+                return (double) left / (double) right;
+            case STAR:
+                checkNumberOperands(operator, left, right);
+                return (double) left * (double) right;
+            case GREATER:
+                checkNumberOperands(operator, left, right);
+                return (double) left > (double) right;
+            case GREATER_EQUAL:
+                checkNumberOperands(operator, left, right);
+                return (double) left >= (double) right;
+            case LESS:
+                checkNumberOperands(operator, left, right);
+                return (double) left < (double) right;
+            case LESS_EQUAL:
+                checkNumberOperands(operator, left, right);
+                return (double) left <= (double) right;
+            case EQUAL_EQUAL:
+                checkNumberOperands(operator, left, right);
+                return isEqual(left, right);
+            case BANG_EQUAL:
+                checkNumberOperands(operator, left, right);
+                return !isEqual(left, right);
+            default:
+                throw new RuntimeError(operator, "Unknown operator");
+        }
+    }
+
+    @Override
+    public Object visitCallExpr(Expr.Call expr) {
+        Object callee = evaluate(expr.callee);
+        List<Object> arguments = evaluateArguments(expr.arguments);
+        return callValue(expr.paren, callee, arguments);
+    }
+
+    private Object callValue(Token paren, Object callee, List<Object> arguments) {
+        if (!(callee instanceof LoxCallable)) {
+            throw new RuntimeError(paren, "Can only call functions and classes.");
+        }
+
+        LoxCallable function = (LoxCallable) callee;
+        if (function.arity() != arguments.size()) {
+            throw new RuntimeError(paren, "Expected " + arguments.size() + " arguments, got " + function.arity() + " instead.");
+        }
+        try {
+            return function.call(this, arguments);
+        } catch (NativeError e) {
+            throw new RuntimeError(paren, e.getMessage());
+        }
+    }
+
+    @Override
+    public Object visitGetExpr(Expr.Get expr) {
+        return getProperty(evaluate(expr.object), expr.name);
+    }
+
+    private Object getProperty(Object obj, Token name) {
+        if (obj instanceof LoxInstance) {
+            try {
+                return ((LoxInstance) obj).get(name, this);
+            } catch (NativeError e) {
+                throw new RuntimeError(name, e.getMessage());
+            }
+        }
+        if (obj instanceof JavaObject) {
+            return ((JavaObject) obj).get(name);
+        }
+        throw new RuntimeError(name, "Tried to access a property of something other than an instance.");
+    }
+
+    @Override
+    public Object visitGroupingExpr(Expr.Grouping expr) {
+        return evaluate(expr.expression);
+    }
+
+    @Override
+    public Object visitLiteralExpr(Expr.Literal expr) {
+        return expr.value;
+    }
+
+    @Override
+    public Object visitLogicalExpr(Expr.Logical expr) {
+        Object left = evaluate(expr.left);
+
+        switch (expr.operator.type) {
+            case OR:
+                if (isTruthy(left)) {
+                    return left;
+                }
+                break;
+            case AND:
+                if (!isTruthy(left)) {
+                    return left;
+                }
+                break;
+            default:
+                throw new RuntimeError(expr.operator, "Unknown logical operator.");
+        }
+
+        return evaluate(expr.right);
+    }
+
+    @Override
+    public Object visitSetExpr(Expr.Set expr) {
+        Object obj = evaluate(expr.object);
+
+        if (!(obj instanceof LoxInstance)) {
+            throw new RuntimeError(expr.name, "Can't set a field inside an object that is not an instance.");
+        }
+
+        Object value = evaluate(expr.value);
+        ((LoxInstance) obj).set(expr.name, value);
+        return value;
+    }
+
+    @Override
+    public Object visitSuperExpr(Expr.Super expr) {
+        LoxClass superclass = (LoxClass) lookUpLocal(expr.depth, expr.captured, "super");
+        LoxInstance instance = (LoxInstance) lookUpLocal(expr.thisDepth, expr.thisCaptured, "this");
+        LoxFunction method = superclass.findMethod(expr.method.lexeme);
+        if (method == null) {
+            method = superclass.findGetter(expr.method.lexeme);
+        }
+        if (method == null) {
+            throw new RuntimeError(expr.method, "Undefined property '" + expr.method.lexeme + "'.");
+        }
+        return method.bind(instance);
+    }
+
+    @Override
+    public Object visitThisExpr(Expr.This expr) {
+        return lookUpLocal(expr.depth, expr.captured, expr.keyword.lexeme);
+    }
+
+    @Override
+    public Object visitUnaryExpr(Expr.Unary expr) {
+        Object right = evaluate(expr.right);
+        switch (expr.operator.type) {
+            case MINUS:
+                if (expr.numeric) {
+                    return -(double) right;
+                }
+                checkNumberOperand(expr.operator, right);
+                return -(double) right;
+            case BANG:
+                return !isTruthy(right);
+            default:
+                throw new RuntimeError(expr.operator, "Unknown operator");
+        }
+    }
+
+    @Override
+    public Object visitTernaryExpr(Expr.Ternary expr) {
+        Object condition = evaluate(expr.condition);
+        return isTruthy(condition) ? evaluate(expr.left) : evaluate(expr.right);
+    }
+
+    @Override
+    public Object visitVariableExpr(Expr.Variable expr) {
+        GlobalEnvironment.Cell cell = expr.cell;
+        if (expr.depth == -1 && !globals.owns(cell)) {
+            expr.cell = cell = globals.cell(expr.name.lexeme);
+        }
+        return lookUpVariable(expr.name, expr.depth, expr.captured, cell);
+    }
+
+    private Object lookUpVariable(Token name, int depth, boolean captured, GlobalEnvironment.Cell cell) {
+        if (depth == -1) {
+            return cell.get(name);
+        }
+        return captured ? environment.getCapturedAt(depth, name.lexeme) : environment.getAt(depth, name.lexeme);
+    }
+
+    private Object lookUpLocal(int depth, boolean captured, String name) {
+        return captured ? environment.getCapturedAt(depth, name) : environment.getAt(depth, name);
+    }
+
+    @Override
+    public Object visitAnonFunctionExpr(Expr.AnonFunction expr) {
+        return new LoxFunction(expr, capture(expr.captures));
+    }
+
+    @Override
+    public Object visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        allocate();
+        LoxArray array = new LoxArray(0);
+        for (Expr element : expr.elements) {
+            array.push(evaluate(element));
+        }
+        return array;
+    }
+
+    @Override
+    public Object visitIndexExpr(Expr.Index expr) {
+        Object obj = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        if (obj instanceof LoxMap) {
+            return ((LoxMap) obj).get(checkKey(expr.bracket, index));
+        }
+        if (!(obj instanceof LoxArray)) {
+            throw new RuntimeError(expr.bracket, "Can only index into an array or a map.");
+        }
+        LoxArray array = (LoxArray) obj;
+        return array.get(checkIndex(expr.bracket, index, array));
+    }
+
+    @Override
+    public Object visitIndexSetExpr(Expr.IndexSet expr) {
+        Object obj = evaluate(expr.object);
+        Object index = evaluate(expr.index);
+        if (obj instanceof LoxMap) {
+            Object key = checkKey(expr.bracket, index);
+            Object value = evaluate(expr.value);
+            ((LoxMap) obj).put(key, value);
+            return value;
+        }
+        if (!(obj instanceof LoxArray)) {
+            throw new RuntimeError(expr.bracket, "Can only index into an array or a map.");
+        }
+        LoxArray array = (LoxArray) obj;
+        int position = checkIndex(expr.bracket, index, array);
+        Object value = evaluate(expr.value);
+        array.set(position, value);
+        return value;
+    }
+
+    private Object checkKey(Token bracket, Object key) {
+        if (key == null) {
+            throw new RuntimeError(bracket, "Map keys cannot be nil.");
+        }
+        return key;
+    }
+
+    @Override
+    public Object visitCompareConstantExpr(Expr.CompareConstant expr) {
+        GlobalEnvironment.Cell cell = expr.cell;
+        if (expr.depth == -1 && !globals.owns(cell)) {
+            expr.cell = cell = globals.cell(expr.name.lexeme);
+        }
+        Object value = lookUpVariable(expr.name, expr.depth, expr.captured, cell);
+        if (!(value instanceof Double)) {
+            return binaryOperation(expr.operator, value, expr.constant);
+        }
+        double number = (double) value;
+        switch (expr.operator.type) {
+            case LESS:
+                return number < expr.constant;
+            case LESS_EQUAL:
+                return number <= expr.constant;
+            case GREATER:
+                return number > expr.constant;
+            case GREATER_EQUAL:
+                return number >= expr.constant;
+            case EQUAL_EQUAL:
+                return Double.doubleToLongBits(number) == Double.doubleToLongBits(expr.constant);
+            case BANG_EQUAL:
+                return Double.doubleToLongBits(number) != Double.doubleToLongBits(expr.constant);
+            default:
+                return binaryOperation(expr.operator, value, expr.constant);
+        }
+    }
+
+    @Override
+    public Object visitIncrementExpr(Expr.Increment expr) {
+        GlobalEnvironment.Cell cell = expr.cell;
+        if (expr.depth == -1 && !globals.owns(cell)) {
+            expr.cell = cell = globals.cell(expr.name.lexeme);
+        }
+        Object current = lookUpVariable(expr.name, expr.depth, expr.captured, cell);
+        Object value;
+        if (current instanceof Double) {
+            value = expr.operator.type == TokenType.PLUS ? (double) current + expr.delta : (double) current - expr.delta;
+        } else {
+            value = binaryOperation(expr.operator, current, expr.delta);
+        }
+        assignVariable(expr.name, expr.depth, expr.captured, cell, value);
+        return value;
+    }
+
+    @Override
+    public Object visitCompoundAssignExpr(Expr.CompoundAssign expr) {
+        GlobalEnvironment.Cell cell = expr.cell;
+        if (expr.depth == -1 && !globals.owns(cell)) {
+            expr.cell = cell = globals.cell(expr.name.lexeme);
+        }
+        Object current = lookUpVariable(expr.name, expr.depth, expr.captured, cell);
+        Object operand = evaluate(expr.operand);
+        Object value = binaryOperation(expr.operator, current, operand);
+        assignVariable(expr.name, expr.depth, expr.captured, cell, value);
+        return value;
+    }
+
+    @Override
+    public Object visitInvokeExpr(Expr.Invoke expr) {
+        Object obj = evaluate(expr.object);
+        if (obj instanceof LoxInstance) {
+            LoxFunction method = ((LoxInstance) obj).findInvokableMethod(expr.name.lexeme);
+            if (method != null) {
+                List<Object> arguments = evaluateArguments(expr.arguments);
+                if (method.arity() != arguments.size()) {
+                    throw new RuntimeError(expr.paren, "Expected " + arguments.size() + " arguments, got " + method.arity() + " instead.");
+                }
+                try {
+                    return method.callBound(this, (LoxInstance) obj, arguments);
+                } catch (NativeError e) {
+                    throw new RuntimeError(expr.paren, e.getMessage());
+                }
+            }
+        }
+        Object callee = getProperty(obj, expr.name);
+        return callValue(expr.paren, callee, evaluateArguments(expr.arguments));
+    }
+
+    private List<Object> evaluateArguments(List<Expr> arguments) {
+        List<Object> values = new ArrayList<>(arguments.size());
+        for (Expr argument : arguments) {
+            values.add(evaluate(argument));
+        }
+        return values;
+    }
+
+    private int checkIndex(Token bracket, Object index, LoxArray array) {
+        if (!(index instanceof Double) || (double) index != Math.floor((double) index)) {
+            throw new RuntimeError(bracket, "Array index must be an integer.");
+        }
+        double position = (double) index;
+        if (position < 0 || position >= array.size()) {
+            throw new RuntimeError(bracket, "Array index " + stringify(index) + " out of bounds for length " + array.size() + ".");
+        }
+        return (int) position;
+    }
+
+    private Object evaluate(Expr expr) {
+        return expr.accept(this);
+    }
+
+    private void evaluate(Stmt stmt) {
+        statementCount++;
+        stmt.accept(this);
+    }
+
+    /**
+     * Counts one step towards the run's budget: a loop iteration or a function call. Only every
+     * {@link Budget#CHECK_INTERVAL}th step settles with the shared meter. Without a token to blame, a
+     * {@link NativeError} is thrown for the call site to locate.
+     */
+    void step(Token token) {
+        if (--stepsUntilCheck == 0) {
+            checkBudget(token);
+        }
+    }
+
+    void allocate() {
+        allocations++;
+    }
+
+    /**
+     * Frames, instances, arrays and maps this interpreter has allocated in the current run.
+     */
+    long allocationCount() {
+        return allocationsCharged + allocations;
+    }
+
+    void countCall() {
+        callCount++;
+        frameCount++;
+    }
+
+    void countInstance() {
+        instanceCount++;
+    }
+
+    /**
+     * Adds this interpreter's counters to the process-wide metrics. Interpreters forked to run a task flush when the
+     * task completes, since they never reach the end of {@link #interpret}.
+     */
+    void flushMetrics() {
+        InterpreterMetrics.STATEMENTS.add(statementCount);
+        InterpreterMetrics.CALLS.add(callCount);
+        InterpreterMetrics.FRAMES.add(frameCount);
+        InterpreterMetrics.INSTANCES.add(instanceCount);
+        statementCount = callCount = frameCount = instanceCount = 0;
+    }
+
+    private void checkBudget(Token token) {
+        stepsUntilCheck = Budget.CHECK_INTERVAL;
+        flushMetrics();
+        if (meter == null) {
+            return;
+        }
+        String exceeded = meter.charge(Budget.CHECK_INTERVAL, allocations);
+        allocationsCharged += allocations;
+        allocations = 0;
+        if (exceeded != null) {
+            throw token != null ? new RuntimeError(token, exceeded) : new NativeError(exceeded);
+        }
+    }
+
+    private void checkNumberOperand(Token operator, Object operand) {
+        if (operand instanceof Double) {
+            return;
+        }
+        throw new RuntimeError(operator, "Operand must be a number");
+    }
+
+    private void checkNumberOperands(Token operator, Object left, Object right) {
+        if (left instanceof Double && right instanceof Double) {
+            return;
+        }
+
+        throw new RuntimeError(operator, "Operands must be numbers.");
+    }
+
+    private boolean isTruthy(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (obj instanceof Boolean) {
+            return (boolean) obj;
+        }
+        return true;
+    }
+
+    private boolean isEqual(Object a, Object b) {
+        return Objects.equals(a, b);
+    }
+
+    static String stringify(Object obj) {
+        if (obj == null) {
+            return "nil";
+        }
+
+        if (obj instanceof Double) {
+            String text = obj.toString();
+            if (text.endsWith(".0")) {
+                return text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return obj.toString();
+    }
+}
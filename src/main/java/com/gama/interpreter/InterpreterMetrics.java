@@ -0,0 +1,173 @@
+package com.gama.interpreter;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Process-wide interpreter counters, published as the {@code com.gama.interpreter:type=Interpreter} MBean unless the
+ * {@code gamajlox.jmx} system property is {@code false}. Counters
+ * are {@link LongAdder}s, so threads updating them do not contend. The counts that change on every statement or call
+ * are first kept in plain fields of each {@link Interpreter} and added here once per budget check interval and when a
+ * run ends, so they can lag behind by a few thousand.
+ */
+public final class InterpreterMetrics implements InterpreterMetricsMBean {
+    static final LongAdder CALLS = new LongAdder();
+    static final LongAdder FRAMES = new LongAdder();
+    static final LongAdder INSTANCES = new LongAdder();
+    static final LongAdder STATEMENTS = new LongAdder();
+    static final LongAdder RUNTIME_ERRORS = new LongAdder();
+    static final LongAdder COMPILATIONS = new LongAdder();
+    static final LongAdder SCAN_NANOS = new LongAdder();
+    static final LongAdder PARSE_NANOS = new LongAdder();
+    static final LongAdder RESOLVE_NANOS = new LongAdder();
+    static final LongAdder OPTIMIZE_NANOS = new LongAdder();
+    static final LongAdder EXECUTIONS = new LongAdder();
+    static final LongAdder EXECUTE_NANOS = new LongAdder();
+    static final LongAdder MODULE_CACHE_HITS = new LongAdder();
+    static final LongAdder MODULE_CACHE_MISSES = new LongAdder();
+    static final LongAdder MEMO_HITS = new LongAdder();
+    static final LongAdder MEMO_MISSES = new LongAdder();
+    static final LongAdder SPECIALIZATIONS = new LongAdder();
+    static final LongAdder DEOPTIMIZATIONS = new LongAdder();
+    static final LongAdder LOOP_REPLACEMENTS = new LongAdder();
+
+    static {
+        // Starting the platform MBean server takes longer than many scripts run, so it must not delay the first one.
+        if (!"false".equals(System.getProperty("gamajlox.jmx"))) {
+            Thread registration = new Thread(InterpreterMetrics::register, "lox-metrics");
+            registration.setDaemon(true);
+            registration.start();
+        }
+    }
+
+    private InterpreterMetrics() {
+    }
+
+    /**
+     * Makes sure the MBean gets registered.
+     */
+    static void init() {
+    }
+
+    private static void register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new InterpreterMetrics(),
+                    new ObjectName("com.gama.interpreter:type=Interpreter"));
+        } catch (JMException | SecurityException e) {
+            // Metrics are best effort; an interpreter runs the same without them.
+        }
+    }
+
+    private static double rate(LongAdder hits, LongAdder misses) {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public long getCalls() {
+        return CALLS.sum();
+    }
+
+    @Override
+    public long getFrames() {
+        return FRAMES.sum();
+    }
+
+    @Override
+    public long getInstances() {
+        return INSTANCES.sum();
+    }
+
+    @Override
+    public long getStatements() {
+        return STATEMENTS.sum();
+    }
+
+    @Override
+    public long getRuntimeErrors() {
+        return RUNTIME_ERRORS.sum();
+    }
+
+    @Override
+    public long getCompilations() {
+        return COMPILATIONS.sum();
+    }
+
+    @Override
+    public long getScanTimeNanos() {
+        return SCAN_NANOS.sum();
+    }
+
+    @Override
+    public long getParseTimeNanos() {
+        return PARSE_NANOS.sum();
+    }
+
+    @Override
+    public long getResolveTimeNanos() {
+        return RESOLVE_NANOS.sum();
+    }
+
+    @Override
+    public long getOptimizeTimeNanos() {
+        return OPTIMIZE_NANOS.sum();
+    }
+
+    @Override
+    public long getExecutions() {
+        return EXECUTIONS.sum();
+    }
+
+    @Override
+    public long getExecuteTimeNanos() {
+        return EXECUTE_NANOS.sum();
+    }
+
+    @Override
+    public long getModuleCacheHits() {
+        return MODULE_CACHE_HITS.sum();
+    }
+
+    @Override
+    public long getModuleCacheMisses() {
+        return MODULE_CACHE_MISSES.sum();
+    }
+
+    @Override
+    public double getModuleCacheHitRate() {
+        return rate(MODULE_CACHE_HITS, MODULE_CACHE_MISSES);
+    }
+
+    @Override
+    public long getMemoHits() {
+        return MEMO_HITS.sum();
+    }
+
+    @Override
+    public long getMemoMisses() {
+        return MEMO_MISSES.sum();
+    }
+
+    @Override
+    public double getMemoHitRate() {
+        return rate(MEMO_HITS, MEMO_MISSES);
+    }
+
+    @Override
+    public long getSpecializations() {
+        return SPECIALIZATIONS.sum();
+    }
+
+    @Override
+    public long getDeoptimizations() {
+        return DEOPTIMIZATIONS.sum();
+    }
+
+    @Override
+    public long getLoopReplacements() {
+        return LOOP_REPLACEMENTS.sum();
+    }
+}
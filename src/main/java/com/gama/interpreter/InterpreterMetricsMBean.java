@@ -0,0 +1,49 @@
+package com.gama.interpreter;
+
+/**
+ * Management interface of {@link InterpreterMetrics}. Counts cover every interpreter in the process since it started;
+ * times are totals in nanoseconds.
+ */
+public interface InterpreterMetricsMBean {
+    long getCalls();
+
+    long getFrames();
+
+    long getInstances();
+
+    long getStatements();
+
+    long getRuntimeErrors();
+
+    long getCompilations();
+
+    long getScanTimeNanos();
+
+    long getParseTimeNanos();
+
+    long getResolveTimeNanos();
+
+    long getOptimizeTimeNanos();
+
+    long getExecutions();
+
+    long getExecuteTimeNanos();
+
+    long getModuleCacheHits();
+
+    long getModuleCacheMisses();
+
+    double getModuleCacheHitRate();
+
+    long getMemoHits();
+
+    long getMemoMisses();
+
+    double getMemoHitRate();
+
+    long getSpecializations();
+
+    long getDeoptimizations();
+
+    long getLoopReplacements();
+}
@@ -0,0 +1,266 @@
+package com.gama.interpreter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * A Java method callable from Lox. Argument and return conversions are composed into the method
+ * handle once per class and method, with the receiver left as its leading argument, so binding it
+ * to an object is a plain allocation and a call is a single invokeExact without reflection.
+ */
+public class JavaMethod implements LoxCallable {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType CALL_TYPE = MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private final String name;
+    private final int arity;
+    private final MethodHandle handle;
+    private final Object receiver;
+
+    private JavaMethod(String name, int arity, MethodHandle handle, Object receiver) {
+        this.name = name;
+        this.arity = arity;
+        this.handle = handle;
+        this.receiver = receiver;
+    }
+
+    public static JavaMethod bindStatic(Class<?> owner, String methodName) {
+        Method method = findUnique(owner, methodName, true);
+        return adapt(method, owner);
+    }
+
+    /**
+     * Builds the method, as found on {@code owner}, ready to be bound to any receiver of that class.
+     */
+    static JavaMethod unbound(Method method, Class<?> owner) {
+        return adapt(method, owner);
+    }
+
+    JavaMethod bindTo(Object receiver) {
+        return new JavaMethod(name, arity, handle, receiver);
+    }
+
+    static Method findUnique(Class<?> owner, String methodName, boolean isStatic) {
+        Method found = null;
+        for (Method method : owner.getMethods()) {
+            if (method.getName().equals(methodName) && Modifier.isStatic(method.getModifiers()) == isStatic) {
+                if (found != null) {
+                    throw new IllegalArgumentException("Java method " + owner.getName() + "." + methodName + " is overloaded.");
+                }
+                found = method;
+            }
+        }
+        if (found == null) {
+            throw new IllegalArgumentException("No public Java method " + owner.getName() + "." + methodName + ".");
+        }
+        return found;
+    }
+
+    private static JavaMethod adapt(Method method, Class<?> owner) {
+        try {
+            MethodHandle handle = LOOKUP.unreflect(accessible(method, owner));
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            MethodHandle[] filters = new MethodHandle[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                filters[i] = argumentConverter(parameterTypes[i]);
+            }
+            handle = MethodHandles.filterArguments(handle, isStatic ? 0 : 1, filters);
+            handle = MethodHandles.filterReturnValue(handle, returnConverter(method.getReturnType()));
+            if (isStatic) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            handle = handle.asSpreader(Object[].class, parameterTypes.length).asType(CALL_TYPE);
+            return new JavaMethod(method.getName(), parameterTypes.length, handle, null);
+        } catch (IllegalAccessException | NoSuchMethodException e) {
+            throw new IllegalArgumentException("Cannot bind Java method " + method + ".", e);
+        }
+    }
+
+    /**
+     * Returns {@code method} as declared by a public class or interface, so that it can be bound. A public method of a
+     * class that is not itself public, such as the key set of a {@code HashMap}, is found on a public supertype of
+     * {@code owner}, the class it was looked up on.
+     */
+    private static Method accessible(Method method, Class<?> owner) {
+        if (Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+            return method;
+        }
+        Method found = findPublic(owner, method.getName(), method.getParameterTypes());
+        if (found == null) {
+            throw new IllegalArgumentException("Java method " + method.getName() + " of " + owner.getName()
+                    + " is not declared by any public type.");
+        }
+        return found;
+    }
+
+    private static Method findPublic(Class<?> type, String methodName, Class<?>[] parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        if (Modifier.isPublic(type.getModifiers())) {
+            try {
+                return type.getMethod(methodName, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                return null;
+            }
+        }
+        for (Class<?> supertype : type.getInterfaces()) {
+            Method found = findPublic(supertype, methodName, parameterTypes);
+            if (found != null) {
+                return found;
+            }
+        }
+        return findPublic(type.getSuperclass(), methodName, parameterTypes);
+    }
+
+    private static MethodHandle argumentConverter(Class<?> type) throws NoSuchMethodException, IllegalAccessException {
+        if (type == int.class || type == Integer.class) {
+            return converter("toInt", int.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == long.class || type == Long.class) {
+            return converter("toLong", long.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == double.class || type == Double.class) {
+            return converter("toDouble", double.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == float.class || type == Float.class) {
+            return converter("toFloat", float.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == short.class || type == Short.class) {
+            return converter("toShort", short.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == byte.class || type == Byte.class) {
+            return converter("toByte", byte.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == char.class || type == Character.class) {
+            return converter("toChar", char.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == boolean.class || type == Boolean.class) {
+            return converter("toBoolean", boolean.class).asType(MethodType.methodType(type, Object.class));
+        } else if (type == String.class) {
+            return converter("toJavaString", String.class);
+        }
+        return converter("toObject", Object.class).asType(MethodType.methodType(type, Object.class));
+    }
+
+    private static MethodHandle returnConverter(Class<?> type) throws NoSuchMethodException, IllegalAccessException {
+        if (type == void.class) {
+            return MethodHandles.constant(Object.class, null).asType(MethodType.methodType(Object.class));
+        } else if (type == boolean.class) {
+            return MethodHandles.identity(boolean.class).asType(MethodType.methodType(Object.class, boolean.class));
+        } else if (type == char.class) {
+            return LOOKUP.findStatic(String.class, "valueOf", MethodType.methodType(String.class, char.class))
+                    .asType(MethodType.methodType(Object.class, char.class));
+        } else if (type.isPrimitive()) {
+            return MethodHandles.identity(double.class).asType(MethodType.methodType(Object.class, type));
+        }
+        return LOOKUP.findStatic(JavaMethod.class, "fromJava", MethodType.methodType(Object.class, Object.class))
+                .asType(MethodType.methodType(Object.class, type));
+    }
+
+    private static MethodHandle converter(String name, Class<?> returnType) throws NoSuchMethodException, IllegalAccessException {
+        return LOOKUP.findStatic(JavaMethod.class, name, MethodType.methodType(returnType, Object.class));
+    }
+
+    @Override
+    public int arity() {
+        return arity;
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        try {
+            return (Object) handle.invokeExact(receiver, arguments.toArray());
+        } catch (NativeError | RuntimeError e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new NativeError("Java method " + name + " threw " + e + ".");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<java fn " + name + ">";
+    }
+
+    private static double toDouble(Object value) {
+        if (!(value instanceof Double)) {
+            throw new NativeError("Expected a number.");
+        }
+        return (double) value;
+    }
+
+    private static int toInt(Object value) {
+        double number = toDouble(value);
+        if (number != (int) number) {
+            throw new NativeError("Expected an integer in the int range.");
+        }
+        return (int) number;
+    }
+
+    private static long toLong(Object value) {
+        double number = toDouble(value);
+        if (number != (long) number) {
+            throw new NativeError("Expected an integer in the long range.");
+        }
+        return (long) number;
+    }
+
+    private static short toShort(Object value) {
+        double number = toDouble(value);
+        if (number != (short) number) {
+            throw new NativeError("Expected an integer in the short range.");
+        }
+        return (short) number;
+    }
+
+    private static byte toByte(Object value) {
+        double number = toDouble(value);
+        if (number != (byte) number) {
+            throw new NativeError("Expected an integer in the byte range.");
+        }
+        return (byte) number;
+    }
+
+    private static char toChar(Object value) {
+        if (!(value instanceof String) || ((String) value).length() != 1) {
+            throw new NativeError("Expected a string of one character.");
+        }
+        return ((String) value).charAt(0);
+    }
+
+    private static float toFloat(Object value) {
+        return (float) toDouble(value);
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (!(value instanceof Boolean)) {
+            throw new NativeError("Expected a boolean.");
+        }
+        return (boolean) value;
+    }
+
+    private static String toJavaString(Object value) {
+        if (value != null && !(value instanceof String)) {
+            throw new NativeError("Expected a string.");
+        }
+        return (String) value;
+    }
+
+    private static Object toObject(Object value) {
+        return value instanceof JavaObject ? ((JavaObject) value).target : value;
+    }
+
+    private static Object fromJava(Object value) {
+        if (value instanceof Number && !(value instanceof Double)) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Character) {
+            return value.toString();
+        }
+        if (value == null || value instanceof Double || value instanceof String || value instanceof Boolean
+                || value instanceof LoxInstance || value instanceof LoxCallable || value instanceof LoxArray
+                || value instanceof LoxMap) {
+            return value;
+        }
+        return new JavaObject(value);
+    }
+}
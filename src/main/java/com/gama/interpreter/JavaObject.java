@@ -0,0 +1,75 @@
+package com.gama.interpreter;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A Java object seen from Lox. Its public instance methods can be read like properties and called.
+ * The table of methods is looked up once per class and shared by every object of that class, and so
+ * is each method's handle, built the first time any object of the class reads it.
+ */
+public class JavaObject {
+    private static final class Methods {
+        final Class<?> type;
+        final Map<String, Method> methods = new HashMap<>();
+        final Set<String> overloaded = new HashSet<>();
+        final Map<String, JavaMethod> adapted = new ConcurrentHashMap<>();
+
+        Methods(Class<?> type) {
+            this.type = type;
+            for (Method method : type.getMethods()) {
+                if (Modifier.isStatic(method.getModifiers())) {
+                    continue;
+                }
+                if (methods.put(method.getName(), method) != null) {
+                    overloaded.add(method.getName());
+                }
+            }
+        }
+    }
+
+    private static final ClassValue<Methods> METHODS = new ClassValue<Methods>() {
+        @Override
+        protected Methods computeValue(Class<?> type) {
+            return new Methods(type);
+        }
+    };
+
+    final Object target;
+    private final Methods methods;
+
+    public JavaObject(Object target) {
+        this.target = target;
+        this.methods = METHODS.get(target.getClass());
+    }
+
+    public Object get(Token name) {
+        JavaMethod method = methods.adapted.get(name.lexeme);
+        if (method != null) {
+            return method.bindTo(target);
+        }
+        if (methods.overloaded.contains(name.lexeme)) {
+            throw new RuntimeError(name, "Java method " + name.lexeme + " is overloaded.");
+        }
+        Method declared = methods.methods.get(name.lexeme);
+        if (declared == null) {
+            throw new RuntimeError(name, "Undefined property " + name.lexeme + ".");
+        }
+        try {
+            method = methods.adapted.computeIfAbsent(name.lexeme, key -> JavaMethod.unbound(declared, methods.type));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeError(name, e.getMessage());
+        }
+        return method.bindTo(target);
+    }
+
+    @Override
+    public String toString() {
+        return "<java object " + target.getClass().getName() + ">";
+    }
+}
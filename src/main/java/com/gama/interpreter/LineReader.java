@@ -0,0 +1,94 @@
+package com.gama.interpreter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file one line at a time, decoding it through a fixed pair of buffers so that memory use
+ * does not depend on the size of the file.
+ */
+public class LineReader {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final CharsetDecoder decoder = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder();
+    private boolean endOfInput;
+
+    public LineReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        chars.flip();
+    }
+
+    /**
+     * Returns the next line without its terminator, or null once the file is exhausted.
+     */
+    public String readLine() throws IOException {
+        line.setLength(0);
+        boolean sawAnything = false;
+        while (true) {
+            char[] array = chars.array();
+            int start = chars.position();
+            int end = chars.limit();
+            for (int i = start; i < end; i++) {
+                if (array[i] == '\n') {
+                    line.append(array, start, i - start);
+                    chars.position(i + 1);
+                    return finishLine();
+                }
+            }
+            line.append(array, start, end - start);
+            sawAnything |= end > start;
+            chars.position(end);
+            if (!fill()) {
+                return sawAnything || line.length() > 0 ? finishLine() : null;
+            }
+        }
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private String finishLine() {
+        int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+            line.setLength(length - 1);
+        }
+        return line.toString();
+    }
+
+    private boolean fill() throws IOException {
+        chars.clear();
+        while (chars.position() == 0) {
+            if (endOfInput) {
+                decoder.flush(chars);
+                break;
+            }
+            if (channel.read(bytes) < 0) {
+                endOfInput = true;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput);
+            bytes.compact();
+        }
+        chars.flip();
+        return chars.hasRemaining();
+    }
+
+    @Override
+    public String toString() {
+        return "<line reader>";
+    }
+}
@@ -0,0 +1,100 @@
+package com.gama.interpreter;
+
+import java.util.Arrays;
+
+/**
+ * A growable array that keeps its elements unboxed in a double[] for as long as they are all numbers,
+ * and switches to an Object[] the first time anything else is stored.
+ */
+public class LoxArray {
+    private static final int MIN_CAPACITY = 8;
+
+    private double[] numbers;
+    private Object[] values;
+    private int size;
+
+    public LoxArray(int size) {
+        this.numbers = new double[Math.max(size, MIN_CAPACITY)];
+        this.size = size;
+    }
+
+    public static LoxArray of(Object[] elements) {
+        LoxArray array = new LoxArray(0);
+        for (Object element : elements) {
+            array.push(element);
+        }
+        return array;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isNumeric() {
+        return numbers != null;
+    }
+
+    public Object get(int index) {
+        if (numbers != null) {
+            return numbers[index];
+        }
+        return values[index];
+    }
+
+    public void set(int index, Object value) {
+        if (numbers != null) {
+            if (value instanceof Double) {
+                numbers[index] = (double) value;
+                return;
+            }
+            upgrade();
+        }
+        values[index] = value;
+    }
+
+    public void push(Object value) {
+        int capacity = numbers != null ? numbers.length : values.length;
+        if (size == capacity) {
+            grow(capacity * 2);
+        }
+        size++;
+        set(size - 1, value);
+    }
+
+    public Object pop() {
+        Object value = get(size - 1);
+        if (values != null) {
+            values[size - 1] = null;
+        }
+        size--;
+        return value;
+    }
+
+    private void grow(int capacity) {
+        if (numbers != null) {
+            numbers = Arrays.copyOf(numbers, capacity);
+        } else {
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private void upgrade() {
+        values = new Object[numbers.length];
+        for (int i = 0; i < size; i++) {
+            values[i] = numbers[i];
+        }
+        numbers = null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                builder.append(", ");
+            }
+            builder.append(Interpreter.stringify(get(i)));
+        }
+        return builder.append("]").toString();
+    }
+}
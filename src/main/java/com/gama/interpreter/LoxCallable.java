@@ -1,9 +1,9 @@
-package com.gama.interpreter;
-
-import java.util.List;
-
-public interface LoxCallable {
-    int arity();
-
-    Object call(Interpreter interpreter, List<Object> arguments);
-}
+package com.gama.interpreter;
+
+import java.util.List;
+
+public interface LoxCallable {
+    int arity();
+
+    Object call(Interpreter interpreter, List<Object> arguments);
+}
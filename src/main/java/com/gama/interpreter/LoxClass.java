@@ -1,7 +1,7 @@
-package com.gama.interpreter;
-
-public interface LoxClass {
-    LoxFunction findMethod(String name);
-
-    LoxFunction findGetter(String name);
-}
+package com.gama.interpreter;
+
+public interface LoxClass {
+    LoxFunction findMethod(String name);
+
+    LoxFunction findGetter(String name);
+}
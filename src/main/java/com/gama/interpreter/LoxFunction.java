@@ -1,63 +1,106 @@
-package com.gama.interpreter;
-
-import java.util.List;
-
-public class LoxFunction implements LoxCallable {
-    private final String name;
-    private final List<Token> params;
-    private final List<Stmt> body;
-    private final Environment closure;
-    private final boolean isInitializer;
-
-    public LoxFunction(Stmt.Function declaration, boolean isInitializer, Environment closure) {
-        this(declaration.name.lexeme, declaration.params, declaration.body, isInitializer, closure);
-    }
-
-    public LoxFunction(Expr.AnonFunction declaration, Environment closure) {
-        this("anonymous function", declaration.params, declaration.body, false, closure);
-    }
-
-    private LoxFunction(String name, List<Token> params, List<Stmt> body, boolean isInitializer, Environment closure) {
-        this.name = name;
-        this.params = params;
-        this.body = body;
-        this.isInitializer = isInitializer;
-        this.closure = closure;
-    }
-
-    @Override
-    public int arity() {
-        return params.size();
-    }
-
-    @Override
-    public Object call(Interpreter interpreter, List<Object> arguments) {
-        Environment executionEnvironment = new Environment(this.closure);
-        for (int i = 0; i < arguments.size(); ++i) {
-            executionEnvironment.define(params.get(i).lexeme, arguments.get(i));
-        }
-        try {
-            interpreter.executeBlock(body, executionEnvironment);
-        } catch (Return returnException) {
-            if (isInitializer) {
-                return closure.getAt(0, "this");
-            }
-            return returnException.returnValue;
-        }
-        if (isInitializer) {
-            return closure.getAt(0, "this");
-        }
-        return null;
-    }
-
-    @Override
-    public String toString() {
-        return "<fn " + name + ">";
-    }
-
-    public LoxFunction bind(LoxInstance loxInstance) {
-        Environment environment = new Environment(closure);
-        environment.define("this", loxInstance);
-        return new LoxFunction(name, params, body, isInitializer, environment);
-    }
-}
+package com.gama.interpreter;
+
+import java.util.List;
+
+public class LoxFunction implements LoxCallable {
+    private static class Code {
+        public final List<Token> params;
+        public final List<Stmt> body;
+        public final FunctionProfile profile;
+
+        public Code(List<Token> params, List<Stmt> body, FunctionProfile profile) {
+            this.params = params;
+            this.body = body;
+            this.profile = profile;
+        }
+    }
+
+    private final String name;
+    private volatile Code code;
+    private final Environment closure;
+    private final boolean isInitializer;
+
+    public LoxFunction(Stmt.Function declaration, boolean isInitializer, Environment closure) {
+        this(declaration.name.lexeme, new Code(declaration.params, declaration.body, declaration.profile), isInitializer, closure);
+    }
+
+    public LoxFunction(Expr.AnonFunction declaration, Environment closure) {
+        this("anonymous function", new Code(declaration.params, declaration.body, declaration.profile), false, closure);
+    }
+
+    private LoxFunction(String name, Code code, boolean isInitializer, Environment closure) {
+        this.name = name;
+        this.code = code;
+        this.isInitializer = isInitializer;
+        this.closure = closure;
+    }
+
+    /**
+     * Swaps in a new declaration of this top-level function. Calls already running finish with the old body; every
+     * later call, from any reference to this function, runs the new one.
+     */
+    public void redefine(Stmt.Function declaration) {
+        code = new Code(declaration.params, declaration.body, declaration.profile);
+    }
+
+    @Override
+    public int arity() {
+        return code.params.size();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        return call(interpreter, closure, arguments);
+    }
+
+    /**
+     * Calls this method on an instance without allocating the bound function that {@link #bind} would create.
+     */
+    public Object callBound(Interpreter interpreter, LoxInstance loxInstance, List<Object> arguments) {
+        Environment environment = new Environment(closure);
+        environment.define("this", loxInstance);
+        return call(interpreter, environment, arguments);
+    }
+
+    private Object call(Interpreter interpreter, Environment closure, List<Object> arguments) {
+        interpreter.step(null);
+        interpreter.allocate();
+        interpreter.countCall();
+        Code code = this.code;
+        Environment executionEnvironment = new Environment(closure);
+        for (int i = 0; i < arguments.size(); ++i) {
+            executionEnvironment.define(code.params.get(i).lexeme, arguments.get(i));
+        }
+        FunctionProfile enclosingProfile = interpreter.profile;
+        interpreter.profile = code.profile;
+        try {
+            List<Stmt> body = code.profile.enter(code.params, code.body, arguments);
+            if (!interpreter.tracedBodies.isEmpty()) {
+                body = interpreter.tracedBodies.getOrDefault(code.profile, body);
+            }
+            interpreter.executeBlock(body, executionEnvironment);
+        } catch (Return returnException) {
+            if (isInitializer) {
+                return closure.getAt(0, "this");
+            }
+            return returnException.returnValue;
+        } finally {
+            interpreter.profile = enclosingProfile;
+        }
+        if (isInitializer) {
+            return closure.getAt(0, "this");
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "<fn " + name + ">";
+    }
+
+    public LoxFunction bind(LoxInstance loxInstance) {
+        Environment environment = new Environment(closure);
+        environment.define("this", loxInstance);
+        return new LoxFunction(name, code, isInitializer, environment);
+    }
+}
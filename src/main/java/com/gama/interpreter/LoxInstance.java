@@ -1,38 +1,52 @@
-package com.gama.interpreter;
-
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
-
-public class LoxInstance {
-    public final LoxClass loxClass;
-    private final Map<String, Object> fields = new HashMap<>();
-
-    public LoxInstance(LoxClass loxClass) {
-        this.loxClass = loxClass;
-    }
-
-    @Override
-    public String toString() {
-        return "<" + loxClass + " instance" + ">";
-    }
-
-    public Object get(Token name, Interpreter interpreter) {
-        if (fields.containsKey(name.lexeme)) {
-            return fields.get(name.lexeme);
-        }
-        LoxFunction getter = loxClass.findGetter(name.lexeme);
-        if (getter != null) {
-            return getter.bind(this).call(interpreter, Collections.emptyList());
-        }
-        LoxFunction method = loxClass.findMethod(name.lexeme);
-        if (method != null) {
-            return method.bind(this);
-        }
-        throw new RuntimeError(name, "Undefined property " + name.lexeme + ".");
-    }
-
-    public void set(Token name, Object value) {
-        fields.put(name.lexeme, value);
-    }
-}
+package com.gama.interpreter;
+
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class LoxInstance {
+    private static final Object NIL = new Object();
+
+    public final LoxClass loxClass;
+    private final ConcurrentMap<String, Object> fields = new ConcurrentHashMap<>(4);
+
+    public LoxInstance(LoxClass loxClass) {
+        this.loxClass = loxClass;
+    }
+
+    @Override
+    public String toString() {
+        return "<" + loxClass + " instance" + ">";
+    }
+
+    public Object get(Token name, Interpreter interpreter) {
+        Object field = fields.get(name.lexeme);
+        if (field != null) {
+            return field == NIL ? null : field;
+        }
+        LoxFunction getter = loxClass.findGetter(name.lexeme);
+        if (getter != null) {
+            return getter.bind(this).call(interpreter, Collections.emptyList());
+        }
+        LoxFunction method = loxClass.findMethod(name.lexeme);
+        if (method != null) {
+            return method.bind(this);
+        }
+        throw new RuntimeError(name, "Undefined property " + name.lexeme + ".");
+    }
+
+    /**
+     * Returns the method that a property read followed by a call would end up invoking, or null when
+     * a field or a getter of that name takes precedence.
+     */
+    public LoxFunction findInvokableMethod(String name) {
+        if (fields.containsKey(name) || loxClass.findGetter(name) != null) {
+            return null;
+        }
+        return loxClass.findMethod(name);
+    }
+
+    public void set(Token name, Object value) {
+        fields.put(name.lexeme, value == null ? NIL : value);
+    }
+}
@@ -0,0 +1,195 @@
+package com.gama.interpreter;
+
+/**
+ * A linear-probing hash table. Number keys are stored unboxed in a double[], and every slot keeps
+ * the hash of its key so that probing compares ints before it ever calls equals on a string.
+ * Removal shifts the following entries back instead of leaving tombstones.
+ */
+public class LoxMap {
+    private static final Object NUMBER_KEY = new Object();
+    private static final int MIN_CAPACITY = 8;
+
+    private Object[] keys;
+    private double[] numberKeys;
+    private int[] hashes;
+    private Object[] values;
+    private int size;
+    private int threshold;
+
+    public LoxMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Object get(Object key) {
+        int slot = find(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    public void put(Object key, Object value) {
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && matches(slot, key)) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        store(slot, key, hash, value);
+        if (++size > threshold) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    public Object remove(Object key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        Object removed = values[slot];
+        int mask = keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (keys[next] != null) {
+            int home = hashes[next] & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                numberKeys[hole] = numberKeys[next];
+                hashes[hole] = hashes[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[hole] = null;
+        values[hole] = null;
+        size--;
+        return removed;
+    }
+
+    public LoxArray keys() {
+        Object[] result = new Object[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                result[count++] = keyAt(slot);
+            }
+        }
+        return LoxArray.of(result);
+    }
+
+    public LoxArray values() {
+        Object[] result = new Object[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                result[count++] = values[slot];
+            }
+        }
+        return LoxArray.of(result);
+    }
+
+    private int find(Object key) {
+        int hash = hash(key);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && matches(slot, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean matches(int slot, Object key) {
+        if (keys[slot] == NUMBER_KEY) {
+            return key instanceof Double
+                    && Double.doubleToLongBits(numberKeys[slot]) == Double.doubleToLongBits((double) key);
+        }
+        return keys[slot].equals(key);
+    }
+
+    private Object keyAt(int slot) {
+        return keys[slot] == NUMBER_KEY ? (Object) numberKeys[slot] : keys[slot];
+    }
+
+    private void store(int slot, Object key, int hash, Object value) {
+        if (key instanceof Double) {
+            keys[slot] = NUMBER_KEY;
+            numberKeys[slot] = (double) key;
+        } else {
+            keys[slot] = key;
+        }
+        hashes[slot] = hash;
+        values[slot] = value;
+    }
+
+    private void rehash(int capacity) {
+        Object[] oldKeys = keys;
+        double[] oldNumberKeys = numberKeys;
+        int[] oldHashes = hashes;
+        Object[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) {
+                continue;
+            }
+            int slot = oldHashes[i] & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            numberKeys[slot] = oldNumberKeys[i];
+            hashes[slot] = oldHashes[i];
+            values[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object[capacity];
+        numberKeys = new double[capacity];
+        hashes = new int[capacity];
+        values = new Object[capacity];
+        threshold = capacity / 4 * 3;
+    }
+
+    private static int hash(Object key) {
+        int hash;
+        if (key instanceof Double) {
+            long bits = Double.doubleToLongBits((double) key);
+            hash = (int) (bits ^ (bits >>> 32));
+        } else {
+            hash = key.hashCode();
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        boolean first = true;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] == null) {
+                continue;
+            }
+            if (!first) {
+                builder.append(", ");
+            }
+            first = false;
+            builder.append(Interpreter.stringify(keyAt(slot))).append(": ").append(Interpreter.stringify(values[slot]));
+        }
+        return builder.append("}").toString();
+    }
+}
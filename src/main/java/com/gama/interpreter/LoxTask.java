@@ -0,0 +1,50 @@
+package com.gama.interpreter;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+
+public class LoxTask implements Runnable {
+    private final LoxCallable function;
+    private final Interpreter interpreter;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private Object result;
+    private Throwable failure;
+
+    public LoxTask(LoxCallable function, Interpreter interpreter) {
+        this.function = function;
+        this.interpreter = interpreter;
+    }
+
+    @Override
+    public void run() {
+        try {
+            result = function.call(interpreter, Collections.emptyList());
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            interpreter.flushMetrics();
+            done.countDown();
+        }
+    }
+
+    public Object join() {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NativeError("Interrupted while joining a task.");
+        }
+        if (failure instanceof RuntimeError || failure instanceof NativeError) {
+            throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+            throw new NativeError("Task failed: " + failure + ".");
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "<task>";
+    }
+}
@@ -0,0 +1,35 @@
+package com.gama.interpreter;
+
+public class MapNatives {
+    private MapNatives() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("map", new NativeFunction("map", 0, (interpreter, arguments) -> {
+            interpreter.allocate();
+            return new LoxMap();
+        }));
+        globals.define("contains", new NativeFunction("contains", 2, (interpreter, arguments) ->
+                checkMap(arguments.get(0)).containsKey(checkKey(arguments.get(1)))));
+        globals.define("remove", new NativeFunction("remove", 2, (interpreter, arguments) ->
+                checkMap(arguments.get(0)).remove(checkKey(arguments.get(1)))));
+        globals.define("keys", new NativeFunction("keys", 1, (interpreter, arguments) ->
+                checkMap(arguments.get(0)).keys()));
+        globals.define("values", new NativeFunction("values", 1, (interpreter, arguments) ->
+                checkMap(arguments.get(0)).values()));
+    }
+
+    static LoxMap checkMap(Object map) {
+        if (!(map instanceof LoxMap)) {
+            throw new NativeError("Expected a map.");
+        }
+        return (LoxMap) map;
+    }
+
+    static Object checkKey(Object key) {
+        if (key == null) {
+            throw new NativeError("Map keys cannot be nil.");
+        }
+        return key;
+    }
+}
@@ -0,0 +1,26 @@
+package com.gama.interpreter;
+
+public class MemoNatives {
+    private MemoNatives() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("memoize", new NativeFunction("memoize", 2, (interpreter, arguments) -> {
+            Object function = arguments.get(0);
+            Object maxEntries = arguments.get(1);
+            if (!(function instanceof LoxCallable)) {
+                throw new NativeError("Can only memoize a function.");
+            }
+            if (!(maxEntries instanceof Double) || (double) maxEntries < 1 || (double) maxEntries != Math.floor((double) maxEntries)) {
+                throw new NativeError("Cache size must be a positive integer.");
+            }
+            return new MemoizedFunction((LoxCallable) function, (int) (double) maxEntries);
+        }));
+        globals.define("memoStats", new NativeFunction("memoStats", 1, (interpreter, arguments) -> {
+            if (!(arguments.get(0) instanceof MemoizedFunction)) {
+                throw new NativeError("Expected a memoized function.");
+            }
+            return ((MemoizedFunction) arguments.get(0)).stats();
+        }));
+    }
+}
@@ -0,0 +1,72 @@
+package com.gama.interpreter;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Wraps a pure function with a bounded cache of its results, keyed by argument values and evicting
+ * the least recently used entry when full. The wrapped function runs outside the cache lock, so
+ * concurrent callers only contend on the lookup itself.
+ */
+public class MemoizedFunction implements LoxCallable {
+    private final LoxCallable function;
+    private final Map<Object, Object> cache;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MemoizedFunction(LoxCallable function, int maxEntries) {
+        this.function = function;
+        this.cache = new LinkedHashMap<Object, Object>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+                if (size() > maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public int arity() {
+        return function.arity();
+    }
+
+    @Override
+    public Object call(Interpreter interpreter, List<Object> arguments) {
+        Object key = arguments.size() == 1 ? arguments.get(0) : new ArrayList<>(arguments);
+        synchronized (this) {
+            Object cached = cache.get(key);
+            if (cached != null || cache.containsKey(key)) {
+                hits++;
+                InterpreterMetrics.MEMO_HITS.increment();
+                return cached;
+            }
+            misses++;
+            InterpreterMetrics.MEMO_MISSES.increment();
+        }
+        Object result = function.call(interpreter, arguments);
+        synchronized (this) {
+            cache.put(key, result);
+        }
+        return result;
+    }
+
+    public synchronized LoxMap stats() {
+        LoxMap stats = new LoxMap();
+        stats.put("hits", (double) hits);
+        stats.put("misses", (double) misses);
+        stats.put("evictions", (double) evictions);
+        stats.put("size", (double) cache.size());
+        return stats;
+    }
+
+    @Override
+    public String toString() {
+        return function.toString();
+    }
+}
@@ -0,0 +1,114 @@
+package com.gama.interpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The process-wide cache of compiled modules. Each version of a file is read, scanned, parsed and resolved at most
+ * once per process, whichever session imports it first; a file modified since it was compiled is compiled again on
+ * its next import, and a module that failed to compile is not cached at all. As soon as a module is parsed its own
+ * imports start compiling on the common pool, so independent modules compile in parallel while the importer waits for
+ * the first one it needs.
+ */
+public class Modules {
+    private static final class Entry {
+        final FileTime modified;
+        final CompletableFuture<Program> program = new CompletableFuture<>();
+
+        Entry(FileTime modified) {
+            this.modified = modified;
+        }
+    }
+
+    private static final ConcurrentMap<Path, Entry> compiled = new ConcurrentHashMap<>();
+
+    private Modules() {
+    }
+
+    static Path resolve(Path directory, Stmt.Import stmt) {
+        return directory.resolve((String) stmt.path.literal).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Starts compiling every module the given top-level statements import.
+     */
+    static void prefetch(Path directory, List<Stmt> statements) {
+        for (Stmt statement : statements) {
+            if (statement instanceof Stmt.Import) {
+                compile(resolve(directory, (Stmt.Import) statement));
+            }
+        }
+    }
+
+    /**
+     * Returns the compiled module at {@code path}, waiting for it if another thread is still compiling it.
+     */
+    static Program load(Path path, Token importToken) {
+        try {
+            return compile(path).join();
+        } catch (CompletionException e) {
+            throw new RuntimeError(importToken, e.getCause().getMessage());
+        }
+    }
+
+    private static CompletableFuture<Program> compile(Path path) {
+        FileTime modified = lastModified(path);
+        Entry cached = compiled.get(path);
+        if (cached != null && Objects.equals(cached.modified, modified)) {
+            InterpreterMetrics.MODULE_CACHE_HITS.increment();
+            return cached.program;
+        }
+        Entry fresh = new Entry(modified);
+        Entry entry = compiled.compute(path, (key, current) ->
+                current != null && Objects.equals(current.modified, modified) ? current : fresh);
+        if (entry != fresh) {
+            InterpreterMetrics.MODULE_CACHE_HITS.increment();
+            return entry.program;
+        }
+        InterpreterMetrics.MODULE_CACHE_MISSES.increment();
+        CompletableFuture.supplyAsync(() -> compileFile(path)).whenComplete((program, error) -> {
+            if (error != null) {
+                compiled.remove(path, fresh);
+                fresh.program.completeExceptionally(error);
+            } else {
+                fresh.program.complete(program);
+            }
+        });
+        return fresh.program;
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Program compileFile(Path path) {
+        String source;
+        try {
+            source = new String(Files.readAllBytes(path), Charset.defaultCharset());
+        } catch (IOException e) {
+            throw new NativeError("Could not read module " + path + ".");
+        }
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Program program = Program.compile(source, false, new ErrorReporter(new PrintStream(errors, true)));
+        if (program == null) {
+            throw new NativeError("Module " + path + " has errors:\n" + errors.toString().trim());
+        }
+        prefetch(path.getParent(), program.statements);
+        return program;
+    }
+}
@@ -0,0 +1,11 @@
+package com.gama.interpreter;
+
+/**
+ * Thrown by native functions, which have no token to blame; the interpreter turns it into a
+ * {@link RuntimeError} located at the call site.
+ */
+public class NativeError extends RuntimeException {
+    public NativeError(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,66 @@
+package com.gama.interpreter;
+
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * Moves a long-running loop outside any function onto a specialized copy of itself in the middle of its run. Such
+ * loops run only once, so they never turn hot the way a function does. The copy is resolved exactly like the original,
+ * so it carries on in the same frames with nothing to map; only its arithmetic differs, which skips type checks for
+ * the enclosing locals the loop uses that hold numbers at the moment of the switch.
+ * <p>
+ * The copy is kept on the loop together with the locals it assumes to hold numbers, so later runs of the same loop
+ * switch to it without building it again as long as those locals still hold numbers when they reach the threshold.
+ */
+final class OnStackReplacement {
+    /**
+     * Iterations after which a loop is switched to its specialized copy.
+     */
+    static final long THRESHOLD = 1000;
+
+    /**
+     * Kept on a loop none of whose enclosing locals held a number the first time it reached the threshold.
+     */
+    private static final OnStackReplacement NONE = new OnStackReplacement(null, Collections.emptySet());
+
+    private final Stmt.While loop;
+    private final Set<TypeInferrer.EnclosingLocal> guard;
+
+    private OnStackReplacement(Stmt.While loop, Set<TypeInferrer.EnclosingLocal> guard) {
+        this.loop = loop;
+        this.guard = guard;
+    }
+
+    /**
+     * Returns the copy of {@code loop} to be entered at the head of its next iteration, or null if the loop should
+     * carry on as it is. {@code environment} is the frame the loop runs in. A kept copy whose assumptions no longer
+     * hold is thrown away and built again for the current values.
+     */
+    static Stmt.While enter(Stmt.While loop, Environment environment) {
+        OnStackReplacement replacement = loop.replacement;
+        if (replacement == null || replacement != NONE && !replacement.holds(environment)) {
+            if (replacement != null) {
+                InterpreterMetrics.DEOPTIMIZATIONS.increment();
+            }
+            replacement = compile(loop, environment);
+            loop.replacement = replacement;
+        }
+        return replacement.loop;
+    }
+
+    private boolean holds(Environment environment) {
+        for (TypeInferrer.EnclosingLocal local : guard) {
+            if (!environment.holdsUncapturedNumber(local.distance, local.name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static OnStackReplacement compile(Stmt.While loop, Environment environment) {
+        Stmt.While copy = (Stmt.While) new Optimizer().optimize(Collections.<Stmt>singletonList(loop)).get(0);
+        Set<TypeInferrer.EnclosingLocal> assumed = new TypeInferrer().specialize(copy,
+                local -> environment.holdsUncapturedNumber(local.distance, local.name));
+        return assumed.isEmpty() ? NONE : new OnStackReplacement(copy, assumed);
+    }
+}
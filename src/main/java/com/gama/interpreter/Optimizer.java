@@ -0,0 +1,296 @@
+package com.gama.interpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rewrites a resolved AST, replacing common multi-node shapes with fused nodes that the interpreter
+ * executes in a single visit. Every fused node falls back to the generic operation when its operands
+ * are not of the expected type, so the rewrite never changes what a program does. Running it again on
+ * its own output copies every node that carries per-copy annotations, which is how function bodies
+ * are cloned for specialization.
+ */
+public class Optimizer implements Expr.Visitor<Expr>, Stmt.Visitor<Stmt> {
+    public List<Stmt> optimize(List<Stmt> statements) {
+        List<Stmt> optimized = new ArrayList<>(statements.size());
+        for (Stmt statement : statements) {
+            optimized.add(optimize(statement));
+        }
+        return optimized;
+    }
+
+    protected Stmt optimize(Stmt statement) {
+        return statement == null ? null : statement.accept(this);
+    }
+
+    private Expr optimize(Expr expression) {
+        return expression == null ? null : expression.accept(this);
+    }
+
+    private List<Expr> optimizeAll(List<Expr> expressions) {
+        List<Expr> optimized = new ArrayList<>(expressions.size());
+        for (Expr expression : expressions) {
+            optimized.add(optimize(expression));
+        }
+        return optimized;
+    }
+
+    private static boolean isArithmetic(TokenType type) {
+        return type == TokenType.PLUS || type == TokenType.MINUS || type == TokenType.STAR || type == TokenType.SLASH;
+    }
+
+    private static boolean isComparison(TokenType type) {
+        switch (type) {
+            case LESS:
+            case LESS_EQUAL:
+            case GREATER:
+            case GREATER_EQUAL:
+            case EQUAL_EQUAL:
+            case BANG_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isNumberLiteral(Expr expr) {
+        return expr instanceof Expr.Literal && ((Expr.Literal) expr).value instanceof Double;
+    }
+
+    @Override
+    public Expr visitAssignExpr(Expr.Assign expr) {
+        if (expr.value instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr.value;
+            if (binary.left instanceof Expr.Variable && isArithmetic(binary.operator.type)) {
+                Expr.Variable variable = (Expr.Variable) binary.left;
+                if (variable.name.lexeme.equals(expr.name.lexeme) && variable.depth == expr.depth) {
+                    if (isNumberLiteral(binary.right)
+                            && (binary.operator.type == TokenType.PLUS || binary.operator.type == TokenType.MINUS)) {
+                        Expr.Increment increment = new Expr.Increment(expr.name, binary.operator, (double) ((Expr.Literal) binary.right).value);
+                        increment.depth = expr.depth;
+                        increment.captured = expr.captured;
+                        increment.cell = expr.cell;
+                        return increment;
+                    }
+                    Expr.CompoundAssign compound = new Expr.CompoundAssign(expr.name, binary.operator, optimize(binary.right));
+                    compound.depth = expr.depth;
+                    compound.captured = expr.captured;
+                    compound.cell = expr.cell;
+                    return compound;
+                }
+            }
+        }
+        Expr.Assign assign = new Expr.Assign(expr.name, optimize(expr.value));
+        assign.depth = expr.depth;
+        assign.captured = expr.captured;
+        assign.cell = expr.cell;
+        return assign;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        if (expr.left instanceof Expr.Variable && isComparison(expr.operator.type) && isNumberLiteral(expr.right)) {
+            Expr.Variable variable = (Expr.Variable) expr.left;
+            Expr.CompareConstant compare = new Expr.CompareConstant(variable.name, expr.operator, (double) ((Expr.Literal) expr.right).value);
+            compare.depth = variable.depth;
+            compare.captured = variable.captured;
+            compare.cell = variable.cell;
+            return compare;
+        }
+        return new Expr.Binary(optimize(expr.left), expr.operator, optimize(expr.right));
+    }
+
+    @Override
+    public Expr visitCallExpr(Expr.Call expr) {
+        if (expr.callee instanceof Expr.Get) {
+            Expr.Get get = (Expr.Get) expr.callee;
+            return new Expr.Invoke(optimize(get.object), get.name, expr.paren, optimizeAll(expr.arguments));
+        }
+        return new Expr.Call(optimize(expr.callee), expr.paren, optimizeAll(expr.arguments));
+    }
+
+    @Override
+    public Expr visitGetExpr(Expr.Get expr) {
+        return new Expr.Get(optimize(expr.object), expr.name);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return new Expr.Grouping(optimize(expr.expression));
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitLogicalExpr(Expr.Logical expr) {
+        return new Expr.Logical(optimize(expr.left), expr.operator, optimize(expr.right));
+    }
+
+    @Override
+    public Expr visitSetExpr(Expr.Set expr) {
+        return new Expr.Set(optimize(expr.object), expr.name, optimize(expr.value));
+    }
+
+    @Override
+    public Expr visitSuperExpr(Expr.Super expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitThisExpr(Expr.This expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        return new Expr.Unary(expr.operator, optimize(expr.right));
+    }
+
+    @Override
+    public Expr visitTernaryExpr(Expr.Ternary expr) {
+        return new Expr.Ternary(optimize(expr.condition), optimize(expr.left), optimize(expr.right));
+    }
+
+    @Override
+    public Expr visitVariableExpr(Expr.Variable expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitAnonFunctionExpr(Expr.AnonFunction expr) {
+        Expr.AnonFunction function = new Expr.AnonFunction(expr.params, optimize(expr.body));
+        function.captures = expr.captures;
+        function.profile = expr.profile;
+        return function;
+    }
+
+    @Override
+    public Expr visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        return new Expr.ArrayLiteral(expr.bracket, optimizeAll(expr.elements));
+    }
+
+    @Override
+    public Expr visitIndexExpr(Expr.Index expr) {
+        return new Expr.Index(optimize(expr.object), expr.bracket, optimize(expr.index));
+    }
+
+    @Override
+    public Expr visitIndexSetExpr(Expr.IndexSet expr) {
+        return new Expr.IndexSet(optimize(expr.object), expr.bracket, optimize(expr.index), optimize(expr.value));
+    }
+
+    @Override
+    public Expr visitCompareConstantExpr(Expr.CompareConstant expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitIncrementExpr(Expr.Increment expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitCompoundAssignExpr(Expr.CompoundAssign expr) {
+        Expr.CompoundAssign compound = new Expr.CompoundAssign(expr.name, expr.operator, optimize(expr.operand));
+        compound.depth = expr.depth;
+        compound.captured = expr.captured;
+        compound.cell = expr.cell;
+        return compound;
+    }
+
+    @Override
+    public Expr visitInvokeExpr(Expr.Invoke expr) {
+        return new Expr.Invoke(optimize(expr.object), expr.name, expr.paren, optimizeAll(expr.arguments));
+    }
+
+    @Override
+    public Stmt visitBlockStmt(Stmt.Block stmt) {
+        Stmt.Block block = new Stmt.Block(optimize(stmt.statements));
+        block.scoped = stmt.scoped;
+        block.reusable = stmt.reusable;
+        return block;
+    }
+
+    @Override
+    public Stmt visitClassStmt(Stmt.Class stmt) {
+        return new Stmt.Class(stmt.name, stmt.superclass,
+                optimizeFunctions(stmt.methods), optimizeFunctions(stmt.getters), optimizeFunctions(stmt.staticMethods));
+    }
+
+    private List<Stmt.Function> optimizeFunctions(List<Stmt.Function> functions) {
+        List<Stmt.Function> optimized = new ArrayList<>(functions.size());
+        for (Stmt.Function function : functions) {
+            optimized.add((Stmt.Function) function.accept(this));
+        }
+        return optimized;
+    }
+
+    @Override
+    public Stmt visitExpressionStmt(Stmt.Expression stmt) {
+        Stmt.Expression expression = new Stmt.Expression(optimize(stmt.expression));
+        expression.line = stmt.line;
+        return expression;
+    }
+
+    @Override
+    public Stmt visitFunctionStmt(Stmt.Function stmt) {
+        Stmt.Function function = new Stmt.Function(stmt.name, stmt.params, optimize(stmt.body));
+        function.captures = stmt.captures;
+        function.profile = stmt.profile;
+        return function;
+    }
+
+    @Override
+    public Stmt visitIfStmt(Stmt.If stmt) {
+        Stmt.If ifStmt = new Stmt.If(optimize(stmt.condition), optimize(stmt.thenBranch), optimize(stmt.elseBranch));
+        ifStmt.line = stmt.line;
+        return ifStmt;
+    }
+
+    @Override
+    public Stmt visitPrintStmt(Stmt.Print stmt) {
+        Stmt.Print print = new Stmt.Print(optimize(stmt.expression));
+        print.line = stmt.line;
+        return print;
+    }
+
+    @Override
+    public Stmt visitReturnStmt(Stmt.Return stmt) {
+        return new Stmt.Return(stmt.keyword, optimize(stmt.value));
+    }
+
+    @Override
+    public Stmt visitVarStmt(Stmt.Var stmt) {
+        Stmt.Var var = new Stmt.Var(stmt.name, optimize(stmt.initializer));
+        var.captured = stmt.captured;
+        return var;
+    }
+
+    @Override
+    public Stmt visitWhileStmt(Stmt.While stmt) {
+        return new Stmt.While(stmt.keyword, optimize(stmt.condition), optimize(stmt.body));
+    }
+
+    @Override
+    public Stmt visitBreakStmt(Stmt.Break stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitImportStmt(Stmt.Import stmt) {
+        return stmt;
+    }
+
+    @Override
+    public Stmt visitTracedStmt(Stmt.Traced stmt) {
+        return new Stmt.Traced(optimize(stmt.statement), stmt.line, stmt.tracer);
+    }
+
+    @Override
+    public Stmt visitTracedCallStmt(Stmt.TracedCall stmt) {
+        return new Stmt.TracedCall(stmt.name, stmt.line, optimize(stmt.body), stmt.tracer);
+    }
+}
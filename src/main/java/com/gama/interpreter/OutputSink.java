@@ -0,0 +1,138 @@
+package com.gama.interpreter;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.Charset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where print statements go. Lines are encoded straight into a direct byte buffer, which is written
+ * to the channel according to the flush policy chosen by the factory method, and always when full.
+ */
+public class OutputSink {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lox-output-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder;
+    private final CharBuffer lineSeparator = CharBuffer.wrap(System.lineSeparator());
+    private final int flushThreshold;
+    private final ScheduledFuture<?> scheduledFlush;
+
+    private OutputSink(WritableByteChannel channel, int bufferSize, int flushThreshold, long flushIntervalMillis) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        this.encoder = Charset.defaultCharset().newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.flushThreshold = flushThreshold;
+        this.scheduledFlush = flushIntervalMillis > 0
+                ? flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS)
+                : null;
+    }
+
+    /**
+     * Flushes after every line, for interactive use.
+     */
+    public static OutputSink perLine(WritableByteChannel channel) {
+        return new OutputSink(channel, DEFAULT_BUFFER_SIZE, 0, 0);
+    }
+
+    /**
+     * Only flushes when the buffer is full or when {@link #flush()} is called, typically at exit.
+     */
+    public static OutputSink onExit(WritableByteChannel channel, int bufferSize) {
+        return new OutputSink(channel, bufferSize, bufferSize, 0);
+    }
+
+    public static OutputSink sizeThreshold(WritableByteChannel channel, int bufferSize, int flushThreshold) {
+        return new OutputSink(channel, bufferSize, flushThreshold, 0);
+    }
+
+    public static OutputSink interval(WritableByteChannel channel, int bufferSize, long flushIntervalMillis) {
+        return new OutputSink(channel, bufferSize, bufferSize, flushIntervalMillis);
+    }
+
+    /**
+     * The process's standard output, bypassing the locking and autoflushing of System.out.
+     */
+    public static WritableByteChannel stdout() {
+        return new FileOutputStream(FileDescriptor.out).getChannel();
+    }
+
+    public synchronized void println(String line) {
+        encode(CharBuffer.wrap(line));
+        encode(lineSeparator.duplicate());
+        if (buffer.position() >= flushThreshold) {
+            drain();
+        }
+    }
+
+    public synchronized void flush() {
+        if (buffer.position() > 0) {
+            drain();
+        }
+    }
+
+    /**
+     * Flushes, stops any periodic flushing and closes the underlying channel.
+     */
+    public synchronized void close() {
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<writer>";
+    }
+
+    private void encode(CharBuffer chars) {
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        encoder.reset();
+    }
+
+    private void drain() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.gama.interpreter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Data-parallel natives. Ranges are always split at the same points for a given size, whatever
+ * the number of cores, so reductions combine their partial results in a deterministic order.
+ */
+public class Parallel {
+    private static final int MAX_CHUNKS = 256;
+    private static final ForkJoinPool pool = new ForkJoinPool();
+
+    private Parallel() {
+    }
+
+    public static void register(Environment globals) {
+        globals.define("parallelFor", new NativeFunction("parallelFor", 3, (interpreter, arguments) -> {
+            int lo = checkIndex(arguments.get(0));
+            int hi = checkIndex(arguments.get(1));
+            LoxCallable function = checkFunction(arguments.get(2), 1);
+            if (lo < hi) {
+                pool.invoke(new ForTask(interpreter, function, lo, hi, grain(lo, hi)));
+            }
+            return null;
+        }));
+        globals.define("parallelReduce", new NativeFunction("parallelReduce", 4, (interpreter, arguments) -> {
+            int lo = checkIndex(arguments.get(0));
+            int hi = checkIndex(arguments.get(1));
+            LoxCallable function = checkFunction(arguments.get(2), 1);
+            LoxCallable combine = checkFunction(arguments.get(3), 2);
+            if (lo >= hi) {
+                return null;
+            }
+            return pool.invoke(new ReduceTask(interpreter, function, combine, lo, hi, grain(lo, hi)));
+        }));
+        globals.define("parallelMap", new NativeFunction("parallelMap", 2, (interpreter, arguments) -> {
+            LoxArray array = ArrayNatives.checkArray(arguments.get(0));
+            LoxCallable function = checkFunction(arguments.get(1), 1);
+            Object[] results = new Object[array.size()];
+            if (results.length > 0) {
+                pool.invoke(new MapTask(interpreter, function, array, results, 0, results.length, grain(0, results.length)));
+            }
+            return LoxArray.of(results);
+        }));
+    }
+
+    private static int grain(int lo, int hi) {
+        return Math.max(1, (hi - lo + MAX_CHUNKS - 1) / MAX_CHUNKS);
+    }
+
+    private static int checkIndex(Object index) {
+        if (!(index instanceof Double) || (double) index != Math.floor((double) index)) {
+            throw new NativeError("Range bounds must be integers.");
+        }
+        return (int) (double) index;
+    }
+
+    static LoxCallable checkFunction(Object function, int arity) {
+        if (!(function instanceof LoxCallable) || ((LoxCallable) function).arity() != arity) {
+            throw new NativeError("Expected a function taking " + arity + (arity == 1 ? " argument." : " arguments."));
+        }
+        return (LoxCallable) function;
+    }
+
+    private static class ForTask extends RecursiveAction {
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        ForTask(Interpreter interpreter, LoxCallable function, int lo, int hi, int grain) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                Interpreter worker = interpreter.fork();
+                try {
+                    for (int i = lo; i < hi; i++) {
+                        function.call(worker, Collections.singletonList((double) i));
+                    }
+                } finally {
+                    worker.flushMetrics();
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ForTask(interpreter, function, lo, mid, grain),
+                    new ForTask(interpreter, function, mid, hi, grain));
+        }
+    }
+
+    private static class MapTask extends RecursiveAction {
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final LoxArray array;
+        private final Object[] results;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        MapTask(Interpreter interpreter, LoxCallable function, LoxArray array, Object[] results, int lo, int hi, int grain) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.array = array;
+            this.results = results;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= grain) {
+                Interpreter worker = interpreter.fork();
+                try {
+                    for (int i = lo; i < hi; i++) {
+                        results[i] = function.call(worker, Collections.singletonList(array.get(i)));
+                    }
+                } finally {
+                    worker.flushMetrics();
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new MapTask(interpreter, function, array, results, lo, mid, grain),
+                    new MapTask(interpreter, function, array, results, mid, hi, grain));
+        }
+    }
+
+    private static class ReduceTask extends RecursiveTask<Object> {
+        private final Interpreter interpreter;
+        private final LoxCallable function;
+        private final LoxCallable combine;
+        private final int lo;
+        private final int hi;
+        private final int grain;
+
+        ReduceTask(Interpreter interpreter, LoxCallable function, LoxCallable combine, int lo, int hi, int grain) {
+            this.interpreter = interpreter;
+            this.function = function;
+            this.combine = combine;
+            this.lo = lo;
+            this.hi = hi;
+            this.grain = grain;
+        }
+
+        @Override
+        protected Object compute() {
+            if (hi - lo <= grain) {
+                Interpreter worker = interpreter.fork();
+                try {
+                    Object accumulator = function.call(worker, Collections.singletonList((double) lo));
+                    for (int i = lo + 1; i < hi; i++) {
+                        Object value = function.call(worker, Collections.singletonList((double) i));
+                        accumulator = combine.call(worker, Arrays.asList(accumulator, value));
+                    }
+                    return accumulator;
+                } finally {
+                    worker.flushMetrics();
+                }
+            }
+            int mid = (lo + hi) >>> 1;
+            ReduceTask left = new ReduceTask(interpreter, function, combine, lo, mid, grain);
+            ReduceTask right = new ReduceTask(interpreter, function, combine, mid, hi, grain);
+            right.fork();
+            Object leftResult = left.compute();
+            Object rightResult = right.join();
+            Interpreter worker = interpreter.fork();
+            try {
+                return combine.call(worker, Arrays.asList(leftResult, rightResult));
+            } finally {
+                worker.flushMetrics();
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.gama.interpreter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Keeps function profiles between runs, one file per script named after the hash of its source, so a script that is
+ * run again unchanged starts with the call counts and argument types of every earlier run. Each line of a file holds
+ * one function's call and loop iteration counts followed by the types seen for each of its parameters, in source
+ * order.
+ */
+final class ProfileStore {
+    private ProfileStore() {
+    }
+
+    /**
+     * Seeds the program's profiles from an earlier run of the same source. A missing or unreadable file leaves them
+     * empty.
+     */
+    static void load(Path directory, String source, Program program) {
+        Path file = fileFor(directory, source);
+        if (!Files.isRegularFile(file)) {
+            return;
+        }
+        List<FunctionProfile> profiles = program.profiles;
+        long[] calls = new long[profiles.size()];
+        long[] backEdges = new long[profiles.size()];
+        int[][] types = new int[profiles.size()][];
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < profiles.size(); i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    return;
+                }
+                String[] fields = line.trim().split(" ");
+                calls[i] = Long.parseLong(fields[0]);
+                backEdges[i] = Long.parseLong(fields[1]);
+                types[i] = new int[fields.length - 2];
+                for (int j = 2; j < fields.length; j++) {
+                    types[i][j - 2] = Integer.parseInt(fields[j]);
+                }
+            }
+            if (reader.readLine() != null) {
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            return;
+        }
+        for (int i = 0; i < profiles.size(); i++) {
+            FunctionProfile profile = profiles.get(i);
+            profile.calls = calls[i];
+            profile.backEdges = backEdges[i];
+            profile.argumentTypes = types[i];
+            profile.warm = calls[i] + backEdges[i] >= FunctionProfile.HOT;
+        }
+    }
+
+    /**
+     * Writes the program's profiles as they are now, replacing the file atomically so that concurrent runs of the same
+     * script never read a partial one.
+     */
+    static void save(Path directory, String source, Program program) throws IOException {
+        Files.createDirectories(directory);
+        Path file = fileFor(directory, source);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(temporary, StandardCharsets.UTF_8))) {
+                for (FunctionProfile profile : program.profiles) {
+                    StringBuilder line = new StringBuilder().append(profile.calls).append(' ').append(profile.backEdges);
+                    for (int type : profile.argumentTypes) {
+                        line.append(' ').append(type);
+                    }
+                    writer.println(line);
+                }
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private static Path fileFor(Path directory, String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest) {
+                name.append(String.format("%02x", b));
+            }
+            return directory.resolve(name.append(".profile").toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.gama.interpreter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A scanned, parsed and resolved script. Resolution results are stored on the AST nodes themselves. Neither the
+ * syntax tree nor those results change after {@link #compile} returns, so any number of sessions can execute a
+ * program concurrently.
+ * <p>
+ * Running a program only fills caches kept on its nodes, and each cache is checked before it is used: the global
+ * cells that variable references are linked to, the profiles of its functions, and the specialized copies of hot
+ * functions and loops built from those profiles.
+ */
+public final class Program {
+    final List<Stmt> statements;
+    final List<FunctionProfile> profiles;
+
+    private Program(List<Stmt> statements, List<FunctionProfile> profiles) {
+        this.statements = Collections.unmodifiableList(statements);
+        this.profiles = Collections.unmodifiableList(profiles);
+    }
+
+    /**
+     * Returns null if the source had a syntax or resolution error, which has then been sent to the reporter.
+     */
+    public static Program compile(String source, boolean isReplMode, ErrorReporter reporter) {
+        return compile(source, isReplMode, reporter, null);
+    }
+
+    /**
+     * Compiles against the globals of the session that will run the result, linking global variable references
+     * straight to their cells. Other sessions can still run the result; they relink each reference on first use.
+     */
+    static Program compile(String source, boolean isReplMode, ErrorReporter reporter, GlobalEnvironment globals) {
+        InterpreterMetrics.COMPILATIONS.increment();
+        long start = System.nanoTime();
+        Scanner scanner = new Scanner(source, reporter);
+        List<Token> tokens = scanner.scanTokens();
+        long scanned = System.nanoTime();
+        InterpreterMetrics.SCAN_NANOS.add(scanned - start);
+
+        Parser parser = new Parser(tokens, isReplMode, reporter);
+        List<Stmt> ast = parser.parse();
+        long parsed = System.nanoTime();
+        InterpreterMetrics.PARSE_NANOS.add(parsed - scanned);
+
+        if (reporter.hadError()) {
+            return null;
+        }
+
+        Resolver resolver = new Resolver(reporter, globals);
+        resolver.resolve(ast);
+        long resolved = System.nanoTime();
+        InterpreterMetrics.RESOLVE_NANOS.add(resolved - parsed);
+
+        if (reporter.hadError()) {
+            return null;
+        }
+
+        List<Stmt> optimized = new Optimizer().optimize(ast);
+        new TypeInferrer().infer(optimized);
+        InterpreterMetrics.OPTIMIZE_NANOS.add(System.nanoTime() - resolved);
+        return new Program(optimized, resolver.profiles());
+    }
+}
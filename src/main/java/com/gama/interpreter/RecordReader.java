@@ -0,0 +1,57 @@
+package com.gama.interpreter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a file as consecutive fixed-size records through memory-mapped windows, each holding a
+ * whole number of records, so records never straddle two mappings.
+ */
+public class RecordReader {
+    private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int recordSize;
+    private final long fileSize;
+    private final byte[] record;
+    private MappedByteBuffer window;
+    private long windowEnd;
+
+    public RecordReader(Path path, int recordSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.recordSize = recordSize;
+        this.fileSize = channel.size();
+        this.record = new byte[recordSize];
+    }
+
+    /**
+     * Returns the next record, or null once the file is exhausted. The last record may be shorter.
+     */
+    public String readRecord() throws IOException {
+        if (window == null || !window.hasRemaining()) {
+            if (windowEnd >= fileSize) {
+                return null;
+            }
+            long length = Math.min(Math.max(WINDOW_SIZE / recordSize, 1) * recordSize, fileSize - windowEnd);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, windowEnd, length);
+            windowEnd += length;
+        }
+        int length = Math.min(recordSize, window.remaining());
+        window.get(record, 0, length);
+        return new String(record, 0, length, Charset.defaultCharset());
+    }
+
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "<record reader>";
+    }
+}
@@ -1,332 +1,542 @@
-package com.gama.interpreter;
-
-import java.util.*;
-
-public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
-    private final Interpreter interpreter;
-    private final Stack<Map<String, VarInfo>> scopes = new Stack<>();
-    private FunctionType currentFunction = FunctionType.NONE;
-    private ClassType currentClass = ClassType.NONE;
-    private boolean isInLoop = false;
-
-    private static class VarInfo {
-        public final Token token;
-        public final boolean initialized;
-        public boolean used;
-
-        public VarInfo(Token token, boolean initialized) {
-            this(token, initialized, false);
-        }
-
-        public VarInfo(Token token, boolean initialized, boolean used) {
-            this.token = token;
-            this.initialized = initialized;
-            this.used = used;
-        }
-
-        public void setUsed() {
-            this.used = true;
-        }
-    }
-
-    private enum FunctionType {
-        NONE, FUNCTION, INITIALIZER, METHOD, STATIC_METHOD;
-    }
-
-    private enum ClassType {
-        NONE, CLASS, SUBCLASS;
-    }
-
-    public Resolver(Interpreter interpreter) {
-        this.interpreter = interpreter;
-    }
-
-    public void resolve(List<Stmt> statements) {
-        statements.forEach(this::resolve);
-    }
-
-    private void resolve(Stmt statement) {
-        statement.accept(this);
-    }
-
-    private void resolve(Expr expression) {
-        expression.accept(this);
-    }
-
-    private void resolveLocal(Expr expr, Token name) {
-        for (int i = scopes.size() - 1; i >= 0; i--) {
-            if (scopes.get(i).containsKey(name.lexeme)) {
-                scopes.get(i).get(name.lexeme).setUsed();
-                interpreter.resolve(expr, scopes.size() - 1 - i);
-                return;
-            }
-        }
-    }
-
-    private void resolveFunction(List<Token> params, List<Stmt> body, FunctionType functionType) {
-        FunctionType enclosing = currentFunction;
-        currentFunction = functionType;
-        beginScope();
-        for (Token param : params) {
-            declare(param);
-            define(param);
-        }
-        resolve(body);
-        endScope();
-        currentFunction = enclosing;
-    }
-
-    @Override
-    public Void visitAssignExpr(Expr.Assign expr) {
-        resolve(expr.value);
-        resolveLocal(expr, expr.name);
-        return null;
-    }
-
-    @Override
-    public Void visitBinaryExpr(Expr.Binary expr) {
-        resolve(expr.left);
-        resolve(expr.right);
-        return null;
-    }
-
-    @Override
-    public Void visitCallExpr(Expr.Call expr) {
-        resolve(expr.callee);
-        expr.arguments.forEach(this::resolve);
-        return null;
-    }
-
-    @Override
-    public Void visitGetExpr(Expr.Get expr) {
-        resolve(expr.object);
-        return null;
-    }
-
-    @Override
-    public Void visitGroupingExpr(Expr.Grouping expr) {
-        resolve(expr.expression);
-        return null;
-    }
-
-    @Override
-    public Void visitLiteralExpr(Expr.Literal expr) {
-        return null;
-    }
-
-    @Override
-    public Void visitLogicalExpr(Expr.Logical expr) {
-        resolve(expr.left);
-        resolve(expr.right);
-        return null;
-    }
-
-    @Override
-    public Void visitSetExpr(Expr.Set expr) {
-        resolve(expr.object);
-        resolve(expr.value);
-        return null;
-    }
-
-    @Override
-    public Void visitSuperExpr(Expr.Super expr) {
-        if (currentClass == ClassType.NONE) {
-            Gamajlox.error(expr.keyword, "Cannot use 'super' outside of a class.");
-        } else if (currentClass != ClassType.SUBCLASS) {
-            Gamajlox.error(expr.keyword, "Cannot use 'super' in a class with no superclass.");
-        }
-
-        resolveLocal(expr, expr.keyword);
-        return null;
-    }
-
-    @Override
-    public Void visitThisExpr(Expr.This expr) {
-        if (!Arrays.asList(FunctionType.METHOD, FunctionType.INITIALIZER).contains(currentFunction)) {
-            Gamajlox.error(expr.keyword, "Can only use 'this' in instance methods.");
-            return null;
-        }
-        resolveLocal(expr, expr.keyword);
-        return null;
-    }
-
-    @Override
-    public Void visitUnaryExpr(Expr.Unary expr) {
-        resolve(expr.right);
-        return null;
-    }
-
-    @Override
-    public Void visitTernaryExpr(Expr.Ternary expr) {
-        resolve(expr.condition);
-        resolve(expr.left);
-        resolve(expr.right);
-        return null;
-    }
-
-    @Override
-    public Void visitVariableExpr(Expr.Variable expr) {
-        if (!scopes.isEmpty()) {
-            VarInfo varInfo = scopes.peek().get(expr.name.lexeme);
-            if (varInfo != null && !varInfo.initialized) {
-                Gamajlox.error(expr.name, "Cannot read local variable in its own initializer.");
-            }
-        }
-        resolveLocal(expr, expr.name);
-        return null;
-    }
-
-    @Override
-    public Void visitAnonFunctionExpr(Expr.AnonFunction expr) {
-        resolveFunction(expr.params, expr.body, FunctionType.FUNCTION);
-        return null;
-    }
-
-    @Override
-    public Void visitBlockStmt(Stmt.Block stmt) {
-        beginScope();
-        resolve(stmt.statements);
-        endScope();
-        return null;
-    }
-
-    @Override
-    public Void visitClassStmt(Stmt.Class stmt) {
-        ClassType enclosing = currentClass;
-        currentClass = ClassType.CLASS;
-        declare(stmt.name);
-        define(stmt.name);
-
-        if (stmt.superclass != null) {
-            currentClass = ClassType.SUBCLASS;
-            if (stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
-                Gamajlox.error(stmt.superclass.name, "A class cannot in herit from itself.");
-            }
-            resolve(stmt.superclass);
-            beginScope();
-            scopes.peek().put("super", new VarInfo(stmt.superclass.name, true, true));
-        }
-
-        beginScope();
-        scopes.peek().put("this", new VarInfo(stmt.name, true, true));
-        for (Stmt.Function method : stmt.methods) {
-            FunctionType functionType = "init".equals(method.name.lexeme) ? FunctionType.INITIALIZER : FunctionType.METHOD;
-            resolveFunction(method.params, method.body, functionType);
-        }
-        for (Stmt.Function getter : stmt.getters) {
-            resolveFunction(getter.params, getter.body, FunctionType.METHOD);
-        }
-        for (Stmt.Function staticMethod : stmt.staticMethods) {
-            resolveFunction(staticMethod.params, staticMethod.body, FunctionType.STATIC_METHOD);
-        }
-        endScope();
-
-        if (stmt.superclass != null) {
-            endScope();
-        }
-
-        currentClass = enclosing;
-        return null;
-    }
-
-    @Override
-    public Void visitExpressionStmt(Stmt.Expression stmt) {
-        resolve(stmt.expression);
-        return null;
-    }
-
-    @Override
-    public Void visitFunctionStmt(Stmt.Function stmt) {
-        declare(stmt.name);
-        define(stmt.name);
-        resolveFunction(stmt.params, stmt.body, FunctionType.FUNCTION);
-        return null;
-    }
-
-    @Override
-    public Void visitIfStmt(Stmt.If stmt) {
-        resolve(stmt.condition);
-        resolve(stmt.thenBranch);
-        if (stmt.elseBranch != null) {
-            resolve(stmt.elseBranch);
-        }
-        return null;
-    }
-
-    @Override
-    public Void visitPrintStmt(Stmt.Print stmt) {
-        resolve(stmt.expression);
-        return null;
-    }
-
-    @Override
-    public Void visitReturnStmt(Stmt.Return stmt) {
-        if (currentFunction == FunctionType.NONE) {
-            Gamajlox.error(stmt.keyword, "Cannot return from top-level code.");
-        }
-        if (stmt.value != null) {
-            if (currentFunction == FunctionType.INITIALIZER) {
-                Gamajlox.error(stmt.keyword, "Cannot return a value from an initializer.");
-            }
-            resolve(stmt.value);
-        }
-        return null;
-    }
-
-    @Override
-    public Void visitVarStmt(Stmt.Var stmt) {
-        declare(stmt.name);
-        if (stmt.initializer != null) {
-            resolve(stmt.initializer);
-        }
-        define(stmt.name);
-        return null;
-    }
-
-    @Override
-    public Void visitWhileStmt(Stmt.While stmt) {
-        resolve(stmt.condition);
-        boolean enclosing = isInLoop;
-        isInLoop = true;
-        resolve(stmt.body);
-        isInLoop = false;
-        return null;
-    }
-
-    @Override
-    public Void visitBreakStmt(Stmt.Break stmt) {
-        if (!isInLoop) {
-            Gamajlox.error(stmt.breakToken, "Cannot break when not in a loop.");
-        }
-        return null;
-    }
-
-    private void beginScope() {
-        scopes.push(new HashMap<>());
-    }
-
-    private void endScope() {
-        Map<String, VarInfo> scope = scopes.pop();
-        scope.values().stream()
-                .filter(var -> !var.used)
-                .forEach(var -> Gamajlox.warning(var.token, "This variable is unused."));
-    }
-
-    private void declare(Token name) {
-        if (scopes.isEmpty()) {
-            return;
-        }
-        Map<String, VarInfo> scope = scopes.peek();
-        if (scope.containsKey(name.lexeme)) {
-            Gamajlox.error(name, "Variable with this name already declared in this scope.");
-        }
-        scope.put(name.lexeme, new VarInfo(name, false));
-    }
-
-    private void define(Token name) {
-        if (scopes.isEmpty()) {
-            return;
-        }
-        scopes.peek().put(name.lexeme, new VarInfo(name, true));
-    }
-}
+package com.gama.interpreter;
+
+import java.util.*;
+
+public class Resolver implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+    private final ErrorReporter reporter;
+    private final GlobalEnvironment globals;
+    private final Stack<Map<String, VarInfo>> scopes = new Stack<>();
+    private final Stack<FunctionScope> functions = new Stack<>();
+    private final List<FunctionProfile> profiles = new ArrayList<>();
+    private FunctionType currentFunction = FunctionType.NONE;
+    private ClassType currentClass = ClassType.NONE;
+    private boolean isInLoop = false;
+
+    private static class VarInfo {
+        public final Token token;
+        public boolean initialized;
+        public boolean used;
+        public boolean captured;
+        public Stmt.Var declaration;
+
+        public VarInfo(Token token, boolean initialized) {
+            this(token, initialized, false);
+        }
+
+        public VarInfo(Token token, boolean initialized, boolean used) {
+            this.token = token;
+            this.initialized = initialized;
+            this.used = used;
+        }
+
+        public void setUsed() {
+            this.used = true;
+        }
+    }
+
+    private static class FunctionScope {
+        public final int base;
+        public final int creation;
+        public final Map<String, Capture> captures = new LinkedHashMap<>();
+
+        /**
+         * @param base index of the outermost scope that lives in the function's own frames, which for bound
+         *             methods is the scope holding {@code this}
+         * @param creation index of the scope the function value is created in
+         */
+        public FunctionScope(int base, int creation) {
+            this.base = base;
+            this.creation = creation;
+        }
+    }
+
+    private static class Resolution {
+        public static final Resolution GLOBAL = new Resolution(-1, false);
+
+        public final int depth;
+        public final boolean captured;
+
+        public Resolution(int depth, boolean captured) {
+            this.depth = depth;
+            this.captured = captured;
+        }
+    }
+
+    private enum FunctionType {
+        NONE, FUNCTION, INITIALIZER, METHOD, STATIC_METHOD;
+    }
+
+    private enum ClassType {
+        NONE, CLASS, SUBCLASS;
+    }
+
+    public Resolver(ErrorReporter reporter) {
+        this(reporter, null);
+    }
+
+    /**
+     * With {@code globals}, references that resolve to a global are linked to its cell right away.
+     */
+    public Resolver(ErrorReporter reporter, GlobalEnvironment globals) {
+        this.reporter = reporter;
+        this.globals = globals;
+    }
+
+    public void resolve(List<Stmt> statements) {
+        statements.forEach(this::resolve);
+    }
+
+    /**
+     * The profiles of every function resolved so far, in source order.
+     */
+    public List<FunctionProfile> profiles() {
+        return profiles;
+    }
+
+    private void resolve(Stmt statement) {
+        statement.accept(this);
+    }
+
+    private void resolve(Expr expression) {
+        expression.accept(this);
+    }
+
+    private Resolution resolveLocal(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            VarInfo varInfo = scopes.get(i).get(name);
+            if (varInfo != null) {
+                varInfo.setUsed();
+                if (functions.isEmpty() || i >= functions.peek().base) {
+                    return new Resolution(scopes.size() - 1 - i, false);
+                }
+                varInfo.captured = true;
+                capture(name, i);
+                return new Resolution(scopes.size() - functions.peek().base, true);
+            }
+        }
+        return Resolution.GLOBAL;
+    }
+
+    private GlobalEnvironment.Cell globalCell(Resolution resolution, Token name) {
+        return resolution == Resolution.GLOBAL && globals != null ? globals.cell(name.lexeme) : null;
+    }
+
+    /**
+     * Records a variable declared in scope {@code scopeIndex} as captured by every function between that scope and the
+     * current one. The outermost of them takes it from its creator's frame, the others from the function around them.
+     */
+    private void capture(String name, int scopeIndex) {
+        int outermost = functions.size() - 1;
+        while (outermost > 0 && functions.get(outermost - 1).base > scopeIndex) {
+            outermost--;
+        }
+        for (int i = outermost; i < functions.size(); i++) {
+            FunctionScope function = functions.get(i);
+            if (function.captures.containsKey(name)) {
+                continue;
+            }
+            Capture capture = i == outermost
+                    ? new Capture(name, function.creation - scopeIndex, false)
+                    : new Capture(name, function.creation - functions.get(i - 1).base + 1, true);
+            function.captures.put(name, capture);
+        }
+    }
+
+    private Capture[] resolveFunction(List<Token> params, List<Stmt> body, FunctionProfile profile,
+                                      FunctionType functionType) {
+        profiles.add(profile);
+        FunctionType enclosing = currentFunction;
+        currentFunction = functionType;
+        beginScope();
+        int paramsScope = scopes.size() - 1;
+        switch (functionType) {
+            case METHOD:
+            case INITIALIZER:
+            case STATIC_METHOD:
+                // Static methods are bound to their class when called, so they too run below a frame holding this.
+                functions.push(new FunctionScope(paramsScope - 1, paramsScope - 2));
+                break;
+            default:
+                functions.push(new FunctionScope(paramsScope, paramsScope - 1));
+        }
+        for (Token param : params) {
+            declare(param);
+            define(param);
+        }
+        resolve(body);
+        endScope();
+        currentFunction = enclosing;
+        return functions.pop().captures.values().toArray(new Capture[0]);
+    }
+
+    @Override
+    public Void visitAssignExpr(Expr.Assign expr) {
+        resolve(expr.value);
+        Resolution resolution = resolveLocal(expr.name.lexeme);
+        expr.depth = resolution.depth;
+        expr.captured = resolution.captured;
+        expr.cell = globalCell(resolution, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        resolve(expr.callee);
+        expr.arguments.forEach(this::resolve);
+        return null;
+    }
+
+    @Override
+    public Void visitGetExpr(Expr.Get expr) {
+        resolve(expr.object);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        resolve(expr.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitLogicalExpr(Expr.Logical expr) {
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitSetExpr(Expr.Set expr) {
+        resolve(expr.object);
+        resolve(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitSuperExpr(Expr.Super expr) {
+        if (currentClass == ClassType.NONE) {
+            reporter.error(expr.keyword, "Cannot use 'super' outside of a class.");
+        } else if (currentClass != ClassType.SUBCLASS) {
+            reporter.error(expr.keyword, "Cannot use 'super' in a class with no superclass.");
+        }
+
+        Resolution superclass = resolveLocal("super");
+        expr.depth = superclass.depth;
+        expr.captured = superclass.captured;
+        Resolution instance = resolveLocal("this");
+        expr.thisDepth = instance.depth;
+        expr.thisCaptured = instance.captured;
+        return null;
+    }
+
+    @Override
+    public Void visitThisExpr(Expr.This expr) {
+        if (!Arrays.asList(FunctionType.METHOD, FunctionType.INITIALIZER).contains(currentFunction)) {
+            reporter.error(expr.keyword, "Can only use 'this' in instance methods.");
+            return null;
+        }
+        Resolution resolution = resolveLocal(expr.keyword.lexeme);
+        expr.depth = resolution.depth;
+        expr.captured = resolution.captured;
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitTernaryExpr(Expr.Ternary expr) {
+        resolve(expr.condition);
+        resolve(expr.left);
+        resolve(expr.right);
+        return null;
+    }
+
+    @Override
+    public Void visitVariableExpr(Expr.Variable expr) {
+        if (!scopes.isEmpty()) {
+            VarInfo varInfo = scopes.peek().get(expr.name.lexeme);
+            if (varInfo != null && !varInfo.initialized) {
+                reporter.error(expr.name, "Cannot read local variable in its own initializer.");
+            }
+        }
+        Resolution resolution = resolveLocal(expr.name.lexeme);
+        expr.depth = resolution.depth;
+        expr.captured = resolution.captured;
+        expr.cell = globalCell(resolution, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitAnonFunctionExpr(Expr.AnonFunction expr) {
+        expr.captures = resolveFunction(expr.params, expr.body, expr.profile, FunctionType.FUNCTION);
+        return null;
+    }
+
+    @Override
+    public Void visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        expr.elements.forEach(this::resolve);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexExpr(Expr.Index expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        return null;
+    }
+
+    @Override
+    public Void visitIndexSetExpr(Expr.IndexSet expr) {
+        resolve(expr.object);
+        resolve(expr.index);
+        resolve(expr.value);
+        return null;
+    }
+
+    @Override
+    public Void visitCompareConstantExpr(Expr.CompareConstant expr) {
+        Resolution resolution = resolveLocal(expr.name.lexeme);
+        expr.depth = resolution.depth;
+        expr.captured = resolution.captured;
+        expr.cell = globalCell(resolution, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitIncrementExpr(Expr.Increment expr) {
+        Resolution resolution = resolveLocal(expr.name.lexeme);
+        expr.depth = resolution.depth;
+        expr.captured = resolution.captured;
+        expr.cell = globalCell(resolution, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitCompoundAssignExpr(Expr.CompoundAssign expr) {
+        resolve(expr.operand);
+        Resolution resolution = resolveLocal(expr.name.lexeme);
+        expr.depth = resolution.depth;
+        expr.captured = resolution.captured;
+        expr.cell = globalCell(resolution, expr.name);
+        return null;
+    }
+
+    @Override
+    public Void visitInvokeExpr(Expr.Invoke expr) {
+        resolve(expr.object);
+        expr.arguments.forEach(this::resolve);
+        return null;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (!declaresAnything(stmt.statements)) {
+            stmt.scoped = false;
+            resolve(stmt.statements);
+            return null;
+        }
+        beginScope();
+        resolve(stmt.statements);
+        stmt.reusable = declaresOnlyVariables(stmt.statements)
+                && scopes.peek().values().stream().noneMatch(var -> var.captured);
+        endScope();
+        return null;
+    }
+
+    private static boolean declaresAnything(List<Stmt> statements) {
+        return statements.stream().anyMatch(statement ->
+                statement instanceof Stmt.Var || statement instanceof Stmt.Function || statement instanceof Stmt.Class);
+    }
+
+    private static boolean declaresOnlyVariables(List<Stmt> statements) {
+        return statements.stream().noneMatch(statement ->
+                statement instanceof Stmt.Function || statement instanceof Stmt.Class);
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        ClassType enclosing = currentClass;
+        currentClass = ClassType.CLASS;
+        declare(stmt.name);
+        define(stmt.name);
+
+        if (stmt.superclass != null) {
+            currentClass = ClassType.SUBCLASS;
+            if (stmt.name.lexeme.equals(stmt.superclass.name.lexeme)) {
+                reporter.error(stmt.superclass.name, "A class cannot in herit from itself.");
+            }
+            resolve(stmt.superclass);
+            beginScope();
+            scopes.peek().put("super", new VarInfo(stmt.superclass.name, true, true));
+        }
+
+        beginScope();
+        scopes.peek().put("this", new VarInfo(stmt.name, true, true));
+        for (Stmt.Function method : stmt.methods) {
+            FunctionType functionType = "init".equals(method.name.lexeme) ? FunctionType.INITIALIZER : FunctionType.METHOD;
+            method.captures = resolveFunction(method.params, method.body, method.profile, functionType);
+        }
+        for (Stmt.Function getter : stmt.getters) {
+            getter.captures = resolveFunction(getter.params, getter.body, getter.profile, FunctionType.METHOD);
+        }
+        for (Stmt.Function staticMethod : stmt.staticMethods) {
+            staticMethod.captures = resolveFunction(staticMethod.params, staticMethod.body, staticMethod.profile, FunctionType.STATIC_METHOD);
+        }
+        endScope();
+
+        if (stmt.superclass != null) {
+            endScope();
+        }
+
+        currentClass = enclosing;
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        declare(stmt.name);
+        define(stmt.name);
+        stmt.captures = resolveFunction(stmt.params, stmt.body, stmt.profile, FunctionType.FUNCTION);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        resolve(stmt.condition);
+        resolve(stmt.thenBranch);
+        if (stmt.elseBranch != null) {
+            resolve(stmt.elseBranch);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        resolve(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (currentFunction == FunctionType.NONE) {
+            reporter.error(stmt.keyword, "Cannot return from top-level code.");
+        }
+        if (stmt.value != null) {
+            if (currentFunction == FunctionType.INITIALIZER) {
+                reporter.error(stmt.keyword, "Cannot return a value from an initializer.");
+            }
+            resolve(stmt.value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        declare(stmt.name);
+        if (stmt.initializer != null) {
+            resolve(stmt.initializer);
+        }
+        define(stmt.name);
+        if (!scopes.isEmpty()) {
+            scopes.peek().get(stmt.name.lexeme).declaration = stmt;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        resolve(stmt.condition);
+        boolean enclosing = isInLoop;
+        isInLoop = true;
+        resolve(stmt.body);
+        isInLoop = false;
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (!isInLoop) {
+            reporter.error(stmt.breakToken, "Cannot break when not in a loop.");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitTracedStmt(Stmt.Traced stmt) {
+        resolve(stmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visitTracedCallStmt(Stmt.TracedCall stmt) {
+        resolve(stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        if (!scopes.isEmpty() || currentFunction != FunctionType.NONE) {
+            reporter.error(stmt.keyword, "Can only import at the top level.");
+        }
+        return null;
+    }
+
+    private void beginScope() {
+        scopes.push(new HashMap<>());
+    }
+
+    private void endScope() {
+        Map<String, VarInfo> scope = scopes.pop();
+        scope.values().stream()
+                .filter(var -> var.captured && var.declaration != null)
+                .forEach(var -> var.declaration.captured = true);
+        scope.values().stream()
+                .filter(var -> !var.used)
+                .forEach(var -> reporter.warning(var.token, "This variable is unused."));
+    }
+
+    private void declare(Token name) {
+        if (scopes.isEmpty()) {
+            return;
+        }
+        Map<String, VarInfo> scope = scopes.peek();
+        if (scope.containsKey(name.lexeme)) {
+            reporter.error(name, "Variable with this name already declared in this scope.");
+        }
+        scope.put(name.lexeme, new VarInfo(name, false));
+    }
+
+    private void define(Token name) {
+        if (scopes.isEmpty()) {
+            return;
+        }
+        VarInfo declared = scopes.peek().get(name.lexeme);
+        if (declared != null) {
+            declared.initialized = true;
+        } else {
+            scopes.peek().put(name.lexeme, new VarInfo(name, true));
+        }
+    }
+}
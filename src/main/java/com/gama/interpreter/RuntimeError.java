@@ -1,10 +1,10 @@
-package com.gama.interpreter;
-
-public class RuntimeError extends RuntimeException {
-    public final Token token;
-
-    public RuntimeError(Token token, String message) {
-        super(message);
-        this.token = token;
-    }
-}
+package com.gama.interpreter;
+
+public class RuntimeError extends RuntimeException {
+    public final Token token;
+
+    public RuntimeError(Token token, String message) {
+        super(message);
+        this.token = token;
+    }
+}
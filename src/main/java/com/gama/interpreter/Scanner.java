@@ -1,231 +1,240 @@
-package com.gama.interpreter;
-
-import java.util.*;
-
-import static com.gama.interpreter.TokenType.*;
-
-public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
-    private int current = 0;
-    private int line = 1;
-    private static final Map<String, TokenType> keywords;
-
-    static {
-        keywords = new HashMap<>();
-        keywords.put("and", AND);
-        keywords.put("class", CLASS);
-        keywords.put("else", ELSE);
-        keywords.put("false", FALSE);
-        keywords.put("for", FOR);
-        keywords.put("fun", FUN);
-        keywords.put("if", IF);
-        keywords.put("nil", NIL);
-        keywords.put("or", OR);
-        keywords.put("print", PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super", SUPER);
-        keywords.put("this", THIS);
-        keywords.put("true", TRUE);
-        keywords.put("var", VAR);
-        keywords.put("while", WHILE);
-        keywords.put("break", BREAK);
-    }
-
-    public Scanner(String source) {
-        this.source = source;
-    }
-
-    public List<Token> scanTokens() {
-        while (!isAtEnd()) {
-            start = current;
-            scanToken();
-        }
-        tokens.add(new Token(EOF, "", null, line));
-        return tokens;
-    }
-
-    private void scanToken() {
-        char c = advance();
-        switch (c) {
-            case '(':
-                addToken(LEFT_PAREN);
-                break;
-            case ')':
-                addToken(RIGHT_PAREN);
-                break;
-            case '{':
-                addToken(LEFT_BRACE);
-                break;
-            case '}':
-                addToken(RIGHT_BRACE);
-                break;
-            case ',':
-                addToken(COMMA);
-                break;
-            case '.':
-                addToken(DOT);
-                break;
-            case '-':
-                addToken(MINUS);
-                break;
-            case '+':
-                addToken(PLUS);
-                break;
-            case ';':
-                addToken(SEMICOLON);
-                break;
-            case '*':
-                addToken(STAR);
-                break;
-            case '?':
-                addToken(QUESTION_MARK);
-                break;
-            case ':':
-                addToken(COLON);
-                break;
-            case '!':
-                addToken(match('=') ? BANG_EQUAL : BANG);
-                break;
-            case '=':
-                addToken(match('=') ? EQUAL_EQUAL : EQUAL);
-                break;
-            case '<':
-                addToken(match('=') ? LESS_EQUAL : LESS);
-                break;
-            case '>':
-                addToken(match('=') ? GREATER_EQUAL : GREATER);
-                break;
-            case '/':
-                slash();
-                break;
-            case '"':
-                string();
-                break;
-            case ' ':
-            case '\r':
-            case '\t':
-            case '\n':
-                break;
-            default:
-                if (isDigit(c)) {
-                    number();
-                } else if (isAlpha(c)) {
-                    identifier();
-                } else {
-                    Gamajlox.error(line, "Unexpected character: " + c);
-                }
-                break;
-        }
-    }
-
-    private char advance() {
-        char c = source.charAt(current++);
-        if (c == '\n') {
-            line += 1;
-        }
-        return c;
-    }
-
-    private boolean match(char expected) {
-        if (isAtEnd()) {
-            return false;
-        }
-        if (source.charAt(current) != expected) {
-            return false;
-        }
-        advance();
-        return true;
-    }
-
-    private char peek() {
-        if (isAtEnd()) {
-            return 0;
-        }
-        return source.charAt(current);
-    }
-
-    private char peekNext() {
-        current++;
-        char result = peek();
-        current--;
-        return result;
-    }
-
-    private boolean isDigit(char c) {
-        return c >= '0' && c <= '9';
-    }
-
-    private boolean isAlpha(char c) {
-        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
-    }
-
-    private boolean isAlphaNumeric(char c) {
-        return isDigit(c) || isAlpha(c);
-    }
-
-    private void slash() {
-        if (match('/')) {
-            while (peek() != '\n' && !isAtEnd()) {
-                advance();
-            }
-        } else if (match('*')) {
-            while (peek() != '*' && peekNext() != '/' && !isAtEnd()) {
-                advance();
-            }
-            if (isAtEnd()) {
-                Gamajlox.error(line, "Multiline comment is not properly closed");
-            }
-            advance();
-            advance();
-        } else {
-            addToken(SLASH);
-        }
-    }
-
-    private void string() {
-        while (peek() != '"' && !isAtEnd()) {
-            advance();
-        }
-        if (isAtEnd()) {
-            Gamajlox.error(line, "Unterminated string");
-            return;
-        }
-        advance();
-        addToken(STRING, source.substring(start + 1, current - 1));
-    }
-
-    private void number() {
-        while (isDigit(peek())) {
-            advance();
-        }
-        if (peek() == '.' && isDigit(peekNext())) {
-            advance();
-            while (isDigit(peek())) {
-                advance();
-            }
-        }
-        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
-    }
-
-    private void identifier() {
-        while (isAlphaNumeric(peek())) {
-            advance();
-        }
-        Optional<TokenType> tokenType = Optional.ofNullable(keywords.get(source.substring(start, current)));
-        addToken(tokenType.orElse(IDENTIFIER));
-    }
-
-    private void addToken(TokenType type) {
-        addToken(type, null);
-    }
-
-    private void addToken(TokenType type, Object literal) {
-        tokens.add(new Token(type, source.substring(start, current), literal, line));
-    }
-
-    private boolean isAtEnd() {
-        return current >= source.length();
-    }
-}
+package com.gama.interpreter;
+
+import java.util.*;
+
+import static com.gama.interpreter.TokenType.*;
+
+public class Scanner {
+    private final String source;
+    private final ErrorReporter reporter;
+    private final List<Token> tokens = new ArrayList<>();
+    private int start = 0;
+    private int current = 0;
+    private int line = 1;
+    private static final Map<String, TokenType> keywords;
+
+    static {
+        keywords = new HashMap<>();
+        keywords.put("and", AND);
+        keywords.put("class", CLASS);
+        keywords.put("else", ELSE);
+        keywords.put("false", FALSE);
+        keywords.put("for", FOR);
+        keywords.put("fun", FUN);
+        keywords.put("if", IF);
+        keywords.put("nil", NIL);
+        keywords.put("or", OR);
+        keywords.put("print", PRINT);
+        keywords.put("return", RETURN);
+        keywords.put("super", SUPER);
+        keywords.put("this", THIS);
+        keywords.put("true", TRUE);
+        keywords.put("var", VAR);
+        keywords.put("while", WHILE);
+        keywords.put("break", BREAK);
+        keywords.put("import", IMPORT);
+    }
+
+    public Scanner(String source, ErrorReporter reporter) {
+        this.source = source;
+        this.reporter = reporter;
+    }
+
+    public List<Token> scanTokens() {
+        while (!isAtEnd()) {
+            start = current;
+            scanToken();
+        }
+        tokens.add(new Token(EOF, "", null, line));
+        return tokens;
+    }
+
+    private void scanToken() {
+        char c = advance();
+        switch (c) {
+            case '(':
+                addToken(LEFT_PAREN);
+                break;
+            case ')':
+                addToken(RIGHT_PAREN);
+                break;
+            case '{':
+                addToken(LEFT_BRACE);
+                break;
+            case '}':
+                addToken(RIGHT_BRACE);
+                break;
+            case '[':
+                addToken(LEFT_BRACKET);
+                break;
+            case ']':
+                addToken(RIGHT_BRACKET);
+                break;
+            case ',':
+                addToken(COMMA);
+                break;
+            case '.':
+                addToken(DOT);
+                break;
+            case '-':
+                addToken(MINUS);
+                break;
+            case '+':
+                addToken(PLUS);
+                break;
+            case ';':
+                addToken(SEMICOLON);
+                break;
+            case '*':
+                addToken(STAR);
+                break;
+            case '?':
+                addToken(QUESTION_MARK);
+                break;
+            case ':':
+                addToken(COLON);
+                break;
+            case '!':
+                addToken(match('=') ? BANG_EQUAL : BANG);
+                break;
+            case '=':
+                addToken(match('=') ? EQUAL_EQUAL : EQUAL);
+                break;
+            case '<':
+                addToken(match('=') ? LESS_EQUAL : LESS);
+                break;
+            case '>':
+                addToken(match('=') ? GREATER_EQUAL : GREATER);
+                break;
+            case '/':
+                slash();
+                break;
+            case '"':
+                string();
+                break;
+            case ' ':
+            case '\r':
+            case '\t':
+            case '\n':
+                break;
+            default:
+                if (isDigit(c)) {
+                    number();
+                } else if (isAlpha(c)) {
+                    identifier();
+                } else {
+                    reporter.error(line, "Unexpected character: " + c);
+                }
+                break;
+        }
+    }
+
+    private char advance() {
+        char c = source.charAt(current++);
+        if (c == '\n') {
+            line += 1;
+        }
+        return c;
+    }
+
+    private boolean match(char expected) {
+        if (isAtEnd()) {
+            return false;
+        }
+        if (source.charAt(current) != expected) {
+            return false;
+        }
+        advance();
+        return true;
+    }
+
+    private char peek() {
+        if (isAtEnd()) {
+            return 0;
+        }
+        return source.charAt(current);
+    }
+
+    private char peekNext() {
+        current++;
+        char result = peek();
+        current--;
+        return result;
+    }
+
+    private boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private boolean isAlpha(char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private boolean isAlphaNumeric(char c) {
+        return isDigit(c) || isAlpha(c);
+    }
+
+    private void slash() {
+        if (match('/')) {
+            while (peek() != '\n' && !isAtEnd()) {
+                advance();
+            }
+        } else if (match('*')) {
+            while (peek() != '*' && peekNext() != '/' && !isAtEnd()) {
+                advance();
+            }
+            if (isAtEnd()) {
+                reporter.error(line, "Multiline comment is not properly closed");
+            }
+            advance();
+            advance();
+        } else {
+            addToken(SLASH);
+        }
+    }
+
+    private void string() {
+        while (peek() != '"' && !isAtEnd()) {
+            advance();
+        }
+        if (isAtEnd()) {
+            reporter.error(line, "Unterminated string");
+            return;
+        }
+        advance();
+        addToken(STRING, source.substring(start + 1, current - 1));
+    }
+
+    private void number() {
+        while (isDigit(peek())) {
+            advance();
+        }
+        if (peek() == '.' && isDigit(peekNext())) {
+            advance();
+            while (isDigit(peek())) {
+                advance();
+            }
+        }
+        addToken(NUMBER, Double.parseDouble(source.substring(start, current)));
+    }
+
+    private void identifier() {
+        while (isAlphaNumeric(peek())) {
+            advance();
+        }
+        Optional<TokenType> tokenType = Optional.ofNullable(keywords.get(source.substring(start, current)));
+        addToken(tokenType.orElse(IDENTIFIER));
+    }
+
+    private void addToken(TokenType type) {
+        addToken(type, null);
+    }
+
+    private void addToken(TokenType type, Object literal) {
+        tokens.add(new Token(type, source.substring(start, current), literal, line));
+    }
+
+    private boolean isAtEnd() {
+        return current >= source.length();
+    }
+}
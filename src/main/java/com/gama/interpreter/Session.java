@@ -0,0 +1,159 @@
+package com.gama.interpreter;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The runtime context of one tenant: its own globals, error flags and output streams.
+ * Sessions share no mutable state with each other, so independent sessions can run
+ * on different threads, including on the same {@link Program}.
+ */
+public class Session {
+    private final ErrorReporter reporter;
+    private final Interpreter interpreter;
+    private final OutputSink out;
+    private final PrintStream err;
+    private Path profileDirectory;
+    private volatile Tracer tracer;
+    private volatile Program running;
+
+    public Session(PrintStream out, PrintStream err) {
+        this(OutputSink.perLine(Channels.newChannel(out)), err);
+    }
+
+    public Session(OutputSink out, PrintStream err) {
+        this.reporter = new ErrorReporter(err);
+        this.out = out;
+        this.err = err;
+        this.interpreter = new Interpreter(reporter, out);
+    }
+
+    public ErrorReporter getReporter() {
+        return reporter;
+    }
+
+    /**
+     * Exposes a public static Java method to Lox as a global function.
+     */
+    public void bindStatic(String name, Class<?> owner, String methodName) {
+        interpreter.globals.define(name, JavaMethod.bindStatic(owner, methodName));
+    }
+
+    /**
+     * Exposes a Java object to Lox as a global whose public methods can be called.
+     */
+    public void bindObject(String name, Object target) {
+        interpreter.globals.define(name, new JavaObject(target));
+    }
+
+    /**
+     * Limits every subsequent run of this session; a run that exceeds its budget stops with a runtime error.
+     */
+    public void setBudget(Budget budget) {
+        interpreter.setBudget(budget);
+    }
+
+    /**
+     * Keeps function profiles of scripts run by this session in {@code directory}, so that running the same script
+     * again starts with the specializations an earlier run found worthwhile.
+     */
+    public void setProfileDirectory(Path directory) {
+        this.profileDirectory = directory;
+    }
+
+    /**
+     * Starts watching the file this session's script was loaded from, reloading changed top-level functions and
+     * classes while the script keeps running. Close the returned reloader to stop watching.
+     */
+    public HotReloader watch(Path path) throws IOException {
+        return new HotReloader(interpreter.fork(), path, err);
+    }
+
+    /**
+     * Runs a script file, resolving its imports relative to the file's directory.
+     */
+    public void runFile(Path path) throws IOException {
+        interpreter.setScriptPath(path);
+        run(new String(Files.readAllBytes(path), Charset.defaultCharset()), false);
+    }
+
+    /**
+     * Compiles and runs one script or REPL input against this session's globals. Nothing from earlier inputs is
+     * resolved again, and an input's syntax tree becomes garbage once it has run unless a function or class it
+     * defined is still reachable.
+     */
+    public void run(String source, boolean isReplMode) {
+        Program program = Program.compile(source, isReplMode, reporter, interpreter.globals);
+        if (program == null) {
+            return;
+        }
+        if (isReplMode || profileDirectory == null) {
+            execute(program);
+            return;
+        }
+        ProfileStore.load(profileDirectory, source, program);
+        try {
+            execute(program);
+        } finally {
+            try {
+                ProfileStore.save(profileDirectory, source, program);
+            } catch (IOException e) {
+                err.println("Could not save profile: " + e.getMessage());
+            }
+        }
+    }
+
+    public void execute(Program program) {
+        Tracer tracer = this.tracer;
+        running = program;
+        long start = System.nanoTime();
+        try {
+            interpreter.interpret(tracer != null && tracer.isAttached() ? tracer.instrument(program) : program.statements);
+        } finally {
+            running = null;
+            flushWriters();
+            InterpreterMetrics.EXECUTIONS.increment();
+            InterpreterMetrics.EXECUTE_NANOS.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes out what scripts wrote to files they have not closed, so nothing is lost when a script never closes them.
+     */
+    private void flushWriters() {
+        for (OutputSink writer : interpreter.openWriters) {
+            try {
+                writer.flush();
+            } catch (UncheckedIOException e) {
+                err.println("Could not flush writer: " + e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Attaches a listener to every program this session runs from now on, until the returned tracer is detached. When
+     * a program is already running, calls of its functions are traced from now on, but its top-level statements are
+     * not.
+     */
+    public Tracer trace(TraceListener listener) {
+        Tracer tracer = new Tracer(listener, interpreter.tracedBodies);
+        Program running = this.running;
+        if (running != null) {
+            tracer.instrument(running);
+        }
+        this.tracer = tracer;
+        return tracer;
+    }
+
+    /**
+     * Writes out anything still buffered by the output sink; call it before the process exits.
+     */
+    public void flush() {
+        out.flush();
+    }
+}
@@ -1,174 +1,239 @@
-package com.gama.interpreter;
-
-import java.util.List;
-
-abstract class Stmt {
-
-  public interface Visitor<R> {
-    R visitBlockStmt(Block stmt);
-    R visitClassStmt(Class stmt);
-    R visitExpressionStmt(Expression stmt);
-    R visitFunctionStmt(Function stmt);
-    R visitIfStmt(If stmt);
-    R visitPrintStmt(Print stmt);
-    R visitReturnStmt(Return stmt);
-    R visitVarStmt(Var stmt);
-    R visitWhileStmt(While stmt);
-    R visitBreakStmt(Break stmt);
-  }
-
-  public abstract <R> R accept(Visitor<R> visitor);
-
-  public static class Block extends Stmt {
-    public final List<Stmt> statements;
-
-    public Block(List<Stmt> statements) {
-      this.statements = statements;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitBlockStmt(this);
-    }
-  }
-
-  public static class Class extends Stmt {
-    public final Token name;
-    public final Expr.Variable superclass;
-    public final List<Stmt.Function> methods;
-    public final List<Stmt.Function> getters;
-    public final List<Stmt.Function> staticMethods;
-
-    public Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods, List<Stmt.Function> getters, List<Stmt.Function> staticMethods) {
-      this.name = name;
-      this.superclass = superclass;
-      this.methods = methods;
-      this.getters = getters;
-      this.staticMethods = staticMethods;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitClassStmt(this);
-    }
-  }
-
-  public static class Expression extends Stmt {
-    public final Expr expression;
-
-    public Expression(Expr expression) {
-      this.expression = expression;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitExpressionStmt(this);
-    }
-  }
-
-  public static class Function extends Stmt {
-    public final Token name;
-    public final List<Token> params;
-    public final List<Stmt> body;
-
-    public Function(Token name, List<Token> params, List<Stmt> body) {
-      this.name = name;
-      this.params = params;
-      this.body = body;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitFunctionStmt(this);
-    }
-  }
-
-  public static class If extends Stmt {
-    public final Expr condition;
-    public final Stmt thenBranch;
-    public final Stmt elseBranch;
-
-    public If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
-      this.condition = condition;
-      this.thenBranch = thenBranch;
-      this.elseBranch = elseBranch;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitIfStmt(this);
-    }
-  }
-
-  public static class Print extends Stmt {
-    public final Expr expression;
-
-    public Print(Expr expression) {
-      this.expression = expression;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitPrintStmt(this);
-    }
-  }
-
-  public static class Return extends Stmt {
-    public final Token keyword;
-    public final Expr value;
-
-    public Return(Token keyword, Expr value) {
-      this.keyword = keyword;
-      this.value = value;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitReturnStmt(this);
-    }
-  }
-
-  public static class Var extends Stmt {
-    public final Token name;
-    public final Expr initializer;
-
-    public Var(Token name, Expr initializer) {
-      this.name = name;
-      this.initializer = initializer;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitVarStmt(this);
-    }
-  }
-
-  public static class While extends Stmt {
-    public final Expr condition;
-    public final Stmt body;
-
-    public While(Expr condition, Stmt body) {
-      this.condition = condition;
-      this.body = body;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitWhileStmt(this);
-    }
-  }
-
-  public static class Break extends Stmt {
-    public final Token breakToken;
-
-    public Break(Token breakToken) {
-      this.breakToken = breakToken;
-    }
-
-    @Override
-    public <R> R accept(Visitor<R> visitor) {
-      return visitor.visitBreakStmt(this);
-    }
-  }
-
-}
+package com.gama.interpreter;
+
+import java.util.List;
+
+abstract class Stmt {
+
+  public interface Visitor<R> {
+    R visitBlockStmt(Block stmt);
+    R visitClassStmt(Class stmt);
+    R visitExpressionStmt(Expression stmt);
+    R visitFunctionStmt(Function stmt);
+    R visitIfStmt(If stmt);
+    R visitPrintStmt(Print stmt);
+    R visitReturnStmt(Return stmt);
+    R visitVarStmt(Var stmt);
+    R visitWhileStmt(While stmt);
+    R visitBreakStmt(Break stmt);
+    R visitImportStmt(Import stmt);
+    R visitTracedStmt(Traced stmt);
+    R visitTracedCallStmt(TracedCall stmt);
+  }
+
+  public abstract <R> R accept(Visitor<R> visitor);
+
+  public static class Block extends Stmt {
+    public final List<Stmt> statements;
+    public boolean scoped = true;
+    public boolean reusable = false;
+
+    public Block(List<Stmt> statements) {
+      this.statements = statements;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitBlockStmt(this);
+    }
+  }
+
+  public static class Class extends Stmt {
+    public final Token name;
+    public final Expr.Variable superclass;
+    public final List<Stmt.Function> methods;
+    public final List<Stmt.Function> getters;
+    public final List<Stmt.Function> staticMethods;
+
+    public Class(Token name, Expr.Variable superclass, List<Stmt.Function> methods, List<Stmt.Function> getters, List<Stmt.Function> staticMethods) {
+      this.name = name;
+      this.superclass = superclass;
+      this.methods = methods;
+      this.getters = getters;
+      this.staticMethods = staticMethods;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitClassStmt(this);
+    }
+  }
+
+  public static class Expression extends Stmt {
+    public final Expr expression;
+    public int line = 0;
+
+    public Expression(Expr expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitExpressionStmt(this);
+    }
+  }
+
+  public static class Function extends Stmt {
+    public final Token name;
+    public final List<Token> params;
+    public final List<Stmt> body;
+    public Capture[] captures = new Capture[0];
+    public FunctionProfile profile = new FunctionProfile();
+
+    public Function(Token name, List<Token> params, List<Stmt> body) {
+      this.name = name;
+      this.params = params;
+      this.body = body;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitFunctionStmt(this);
+    }
+  }
+
+  public static class If extends Stmt {
+    public final Expr condition;
+    public final Stmt thenBranch;
+    public final Stmt elseBranch;
+    public int line = 0;
+
+    public If(Expr condition, Stmt thenBranch, Stmt elseBranch) {
+      this.condition = condition;
+      this.thenBranch = thenBranch;
+      this.elseBranch = elseBranch;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitIfStmt(this);
+    }
+  }
+
+  public static class Print extends Stmt {
+    public final Expr expression;
+    public int line = 0;
+
+    public Print(Expr expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitPrintStmt(this);
+    }
+  }
+
+  public static class Return extends Stmt {
+    public final Token keyword;
+    public final Expr value;
+
+    public Return(Token keyword, Expr value) {
+      this.keyword = keyword;
+      this.value = value;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitReturnStmt(this);
+    }
+  }
+
+  public static class Var extends Stmt {
+    public final Token name;
+    public final Expr initializer;
+    public boolean captured = false;
+
+    public Var(Token name, Expr initializer) {
+      this.name = name;
+      this.initializer = initializer;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitVarStmt(this);
+    }
+  }
+
+  public static class While extends Stmt {
+    public final Token keyword;
+    public final Expr condition;
+    public final Stmt body;
+    public OnStackReplacement replacement = null;
+
+    public While(Token keyword, Expr condition, Stmt body) {
+      this.keyword = keyword;
+      this.condition = condition;
+      this.body = body;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitWhileStmt(this);
+    }
+  }
+
+  public static class Break extends Stmt {
+    public final Token breakToken;
+
+    public Break(Token breakToken) {
+      this.breakToken = breakToken;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitBreakStmt(this);
+    }
+  }
+
+  public static class Import extends Stmt {
+    public final Token keyword;
+    public final Token path;
+
+    public Import(Token keyword, Token path) {
+      this.keyword = keyword;
+      this.path = path;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitImportStmt(this);
+    }
+  }
+
+  public static class Traced extends Stmt {
+    public final Stmt statement;
+    public final int line;
+    public final Tracer tracer;
+
+    public Traced(Stmt statement, int line, Tracer tracer) {
+      this.statement = statement;
+      this.line = line;
+      this.tracer = tracer;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitTracedStmt(this);
+    }
+  }
+
+  public static class TracedCall extends Stmt {
+    public final String name;
+    public final int line;
+    public final Stmt body;
+    public final Tracer tracer;
+
+    public TracedCall(String name, int line, Stmt body, Tracer tracer) {
+      this.name = name;
+      this.line = line;
+      this.body = body;
+      this.tracer = tracer;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitTracedCallStmt(this);
+    }
+  }
+
+}
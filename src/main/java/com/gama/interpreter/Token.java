@@ -1,20 +1,20 @@
-package com.gama.interpreter;
-
-public class Token {
-    public final TokenType type;
-    public final String lexeme;
-    public final Object literal;
-    public final int line;
-
-    public Token(TokenType type, String lexeme, Object literal, int line) {
-        this.type = type;
-        this.lexeme = lexeme;
-        this.literal = literal;
-        this.line = line;
-    }
-
-    @Override
-    public String toString() {
-        return type + " " + lexeme + " " + literal;
-    }
-}
+package com.gama.interpreter;
+
+public class Token {
+    public final TokenType type;
+    public final String lexeme;
+    public final Object literal;
+    public final int line;
+
+    public Token(TokenType type, String lexeme, Object literal, int line) {
+        this.type = type;
+        this.lexeme = lexeme;
+        this.literal = literal;
+        this.line = line;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + lexeme + " " + literal;
+    }
+}
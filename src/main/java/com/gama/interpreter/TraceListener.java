@@ -0,0 +1,31 @@
+package com.gama.interpreter;
+
+/**
+ * Receives the events of a {@link Tracer}. Hooks run on the thread executing the traced code, in the middle of it, so
+ * they should return quickly; every hook does nothing unless overridden.
+ */
+public interface TraceListener {
+    /**
+     * A statement starting on {@code line} is about to run.
+     */
+    default void line(int line) {
+    }
+
+    /**
+     * A function or method declared on {@code line} was called and its body is about to run.
+     */
+    default void enter(String function, int line) {
+    }
+
+    /**
+     * A function or method returned, normally or by throwing.
+     */
+    default void exit(String function) {
+    }
+
+    /**
+     * A runtime error was thrown by a statement; it is reported once, where it was first seen.
+     */
+    default void exception(RuntimeError error) {
+    }
+}
@@ -0,0 +1,143 @@
+package com.gama.interpreter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds a {@link TraceListener} with the statements and calls of the programs its session runs. Instrumenting never
+ * touches a program's own syntax tree: it builds a copy in which every statement is wrapped in a {@link Stmt.Traced}
+ * node and every function body in a {@link Stmt.TracedCall}, and has calls of the program's functions made by its
+ * session run their wrapped bodies until the tracer is detached. Other sessions running the same program, and code
+ * that is not being traced, run exactly as they would without tracers.
+ */
+public final class Tracer {
+    private class Instrumenter extends Optimizer {
+        @Override
+        protected Stmt optimize(Stmt statement) {
+            Stmt copy = super.optimize(statement);
+            if (copy == null || copy instanceof Stmt.Block) {
+                return copy;
+            }
+            return new Stmt.Traced(copy, lineOf(copy), Tracer.this);
+        }
+
+        @Override
+        public Stmt visitFunctionStmt(Stmt.Function stmt) {
+            Stmt.Function copy = (Stmt.Function) super.visitFunctionStmt(stmt);
+            traceCalls(copy.name.lexeme, copy.name.line, copy.body, copy.profile);
+            return copy;
+        }
+
+        @Override
+        public Expr visitAnonFunctionExpr(Expr.AnonFunction expr) {
+            Expr.AnonFunction copy = (Expr.AnonFunction) super.visitAnonFunctionExpr(expr);
+            int line = copy.params.isEmpty() ? (copy.body.isEmpty() ? 0 : lineOf(copy.body.get(0))) : copy.params.get(0).line;
+            traceCalls("anonymous function", line, copy.body, copy.profile);
+            return copy;
+        }
+    }
+
+    private final TraceListener listener;
+    private final Map<FunctionProfile, List<Stmt>> bodies;
+    private final Map<FunctionProfile, List<Stmt>> traced = new HashMap<>();
+    private volatile boolean attached = true;
+    private volatile RuntimeError reported;
+
+    /**
+     * {@code bodies} is the session's table of the bodies its calls run in place of their own.
+     */
+    Tracer(TraceListener listener, Map<FunctionProfile, List<Stmt>> bodies) {
+        this.listener = listener;
+        this.bodies = bodies;
+    }
+
+    public boolean isAttached() {
+        return attached;
+    }
+
+    /**
+     * Stops all events and puts every function this tracer instrumented back on its own body. Statements of a traced
+     * copy that is still running keep their wrappers until they finish, but report nothing.
+     */
+    public synchronized void detach() {
+        attached = false;
+        traced.forEach(bodies::remove);
+        traced.clear();
+    }
+
+    /**
+     * Returns an instrumented copy of the program's top-level statements. From now on, calls of the program's functions
+     * made by the session run instrumented copies of their bodies, wherever the calls come from.
+     */
+    synchronized List<Stmt> instrument(Program program) {
+        return new Instrumenter().optimize(program.statements);
+    }
+
+    private void traceCalls(String name, int line, List<Stmt> body, FunctionProfile profile) {
+        if (!attached) {
+            return;
+        }
+        Stmt.Block block = new Stmt.Block(body);
+        block.scoped = false;
+        List<Stmt> tracedBody = Collections.singletonList(new Stmt.TracedCall(name, line, block, this));
+        bodies.put(profile, tracedBody);
+        traced.put(profile, tracedBody);
+    }
+
+    void line(int line) {
+        if (attached) {
+            listener.line(line);
+        }
+    }
+
+    void enter(String function, int line) {
+        if (attached) {
+            listener.enter(function, line);
+        }
+    }
+
+    void exit(String function) {
+        if (attached) {
+            listener.exit(function);
+        }
+    }
+
+    void exception(RuntimeError error) {
+        if (attached && error != reported) {
+            reported = error;
+            listener.exception(error);
+        }
+    }
+
+    private static int lineOf(Stmt statement) {
+        if (statement instanceof Stmt.Traced) {
+            return ((Stmt.Traced) statement).line;
+        } else if (statement instanceof Stmt.Block) {
+            List<Stmt> statements = ((Stmt.Block) statement).statements;
+            return statements.isEmpty() ? 0 : lineOf(statements.get(0));
+        } else if (statement instanceof Stmt.Class) {
+            return ((Stmt.Class) statement).name.line;
+        } else if (statement instanceof Stmt.Expression) {
+            return ((Stmt.Expression) statement).line;
+        } else if (statement instanceof Stmt.Function) {
+            return ((Stmt.Function) statement).name.line;
+        } else if (statement instanceof Stmt.If) {
+            return ((Stmt.If) statement).line;
+        } else if (statement instanceof Stmt.Print) {
+            return ((Stmt.Print) statement).line;
+        } else if (statement instanceof Stmt.Return) {
+            return ((Stmt.Return) statement).keyword.line;
+        } else if (statement instanceof Stmt.Var) {
+            return ((Stmt.Var) statement).name.line;
+        } else if (statement instanceof Stmt.While) {
+            return ((Stmt.While) statement).keyword.line;
+        } else if (statement instanceof Stmt.Break) {
+            return ((Stmt.Break) statement).breakToken.line;
+        } else if (statement instanceof Stmt.Import) {
+            return ((Stmt.Import) statement).keyword.line;
+        }
+        return 0;
+    }
+}
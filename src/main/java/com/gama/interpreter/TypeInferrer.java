@@ -0,0 +1,540 @@
+package com.gama.interpreter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Stack;
+import java.util.function.Predicate;
+
+/**
+ * Works out, statement by statement, which local variables always hold a number, a string or a boolean, and marks
+ * the binary and unary operations whose operands are then proven to be numbers so the interpreter can skip their
+ * type checks. Globals, parameters and variables captured by closures can change behind the analysis' back, so they
+ * are never assumed to have a type.
+ */
+public class TypeInferrer implements Expr.Visitor<TypeInferrer.Type>, Stmt.Visitor<Void> {
+    enum Type {
+        NUMBER, STRING, BOOLEAN, UNKNOWN;
+
+        Type join(Type other) {
+            return this == other ? this : UNKNOWN;
+        }
+    }
+
+    private static class Local {
+        public final boolean tracked;
+        public Type type;
+        public boolean escaped;
+
+        public Local(boolean tracked, Type type) {
+            this.tracked = tracked;
+            this.type = tracked ? type : Type.UNKNOWN;
+        }
+    }
+
+    /**
+     * A local declared outside the loop being specialized, {@code distance} frames above the loop's head.
+     */
+    static final class EnclosingLocal {
+        public final int distance;
+        public final String name;
+
+        EnclosingLocal(int distance, String name) {
+            this.distance = distance;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof EnclosingLocal)) {
+                return false;
+            }
+            EnclosingLocal local = (EnclosingLocal) other;
+            return distance == local.distance && name.equals(local.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * distance + name.hashCode();
+        }
+    }
+
+    private final Stack<Map<String, Local>> scopes = new Stack<>();
+    private final Stack<List<Map<Local, Type>>> loopExits = new Stack<>();
+    private final Set<String> escapedNames = new HashSet<>();
+    private Map<EnclosingLocal, Local> enclosingLocals;
+    private Predicate<EnclosingLocal> holdsNumber;
+    private int frames;
+    private int functions;
+
+    public void infer(List<Stmt> statements) {
+        statements.forEach(this::infer);
+    }
+
+    /**
+     * Infers types in a copy of a function body on the assumption that the parameters in {@code numericParams}, a bit
+     * mask, hold numbers on entry. Parameters that a closure assigns to are dropped from the assumption. Returns the
+     * parameters the body ended up specialized for, which the caller must check on every call before running it.
+     */
+    public int specialize(List<Token> params, List<Stmt> body, int numericParams) {
+        while (numericParams != 0) {
+            scopes.push(new HashMap<>());
+            List<Local> assumed = new ArrayList<>();
+            for (int i = 0; i < params.size(); i++) {
+                boolean numeric = i < 32 && (numericParams & (1 << i)) != 0;
+                Local local = new Local(numeric, numeric ? Type.NUMBER : Type.UNKNOWN);
+                scopes.peek().put(params.get(i).lexeme, local);
+                assumed.add(local);
+            }
+            infer(body);
+            scopes.pop();
+            int escaped = 0;
+            for (int i = 0; i < assumed.size() && i < 32; i++) {
+                if (assumed.get(i).escaped) {
+                    escaped |= 1 << i;
+                }
+            }
+            if ((numericParams & escaped) == 0) {
+                return numericParams;
+            }
+            numericParams &= ~escaped;
+        }
+        return 0;
+    }
+
+    private void infer(Stmt statement) {
+        statement.accept(this);
+    }
+
+    private Type infer(Expr expression) {
+        return expression.accept(this);
+    }
+
+    /**
+     * Infers types in a copy of a loop that is about to take over from the running original, on the assumption that
+     * the enclosing locals for which {@code holdsNumber} answers true hold numbers at the loop's head. Only locals the
+     * loop actually uses are asked about, each named by where it was resolved rather than by its name alone, since a
+     * frame reused across iterations can still hold a variable of the same name declared later in the previous one.
+     * Locals that a closure assigns to are dropped from the assumption. Returns the locals the loop ended up
+     * specialized for.
+     */
+    public Set<EnclosingLocal> specialize(Stmt.While loop, Predicate<EnclosingLocal> holdsNumber) {
+        Set<String> rejected = new HashSet<>();
+        while (true) {
+            enclosingLocals = new HashMap<>();
+            this.holdsNumber = local -> !rejected.contains(local.name) && holdsNumber.test(local);
+            infer(loop);
+            // The first pass only finds the locals the loop uses; the second takes them all into its snapshots.
+            enclosingLocals.replaceAll((enclosing, local) -> new Local(local.tracked, Type.NUMBER));
+            infer(loop);
+            Set<EnclosingLocal> assumed = new HashSet<>();
+            boolean escaped = false;
+            for (Map.Entry<EnclosingLocal, Local> entry : enclosingLocals.entrySet()) {
+                if (!entry.getValue().tracked) {
+                    continue;
+                }
+                if (escapedNames.contains(entry.getKey().name)) {
+                    rejected.add(entry.getKey().name);
+                    escaped = true;
+                } else {
+                    assumed.add(entry.getKey());
+                }
+            }
+            if (!escaped) {
+                enclosingLocals = null;
+                return assumed;
+            }
+        }
+    }
+
+    private Local local(String name, int depth) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Local local = scopes.get(i).get(name);
+            if (local != null) {
+                return local;
+            }
+        }
+        if (enclosingLocals == null || functions > 0 || depth < frames) {
+            return null;
+        }
+        return enclosingLocals.computeIfAbsent(new EnclosingLocal(depth - frames, name), enclosing -> {
+            boolean number = holdsNumber.test(enclosing);
+            return new Local(number, number ? Type.NUMBER : Type.UNKNOWN);
+        });
+    }
+
+    private Type typeOf(String name, int depth, boolean captured) {
+        if (depth == -1 || captured) {
+            return Type.UNKNOWN;
+        }
+        Local local = local(name, depth);
+        return local == null ? Type.UNKNOWN : local.type;
+    }
+
+    private void assign(String name, int depth, boolean captured, Type type) {
+        if (depth == -1) {
+            return;
+        }
+        if (captured) {
+            escapedNames.add(name);
+        }
+        Local local = local(name, depth);
+        if (local == null) {
+            return;
+        }
+        if (captured) {
+            local.escaped = true;
+        } else if (local.tracked) {
+            local.type = type;
+        }
+    }
+
+    private void declare(String name, boolean tracked, Type type) {
+        if (!scopes.isEmpty()) {
+            scopes.peek().put(name, new Local(tracked, type));
+        }
+    }
+
+    private Map<Local, Type> snapshot() {
+        Map<Local, Type> state = new IdentityHashMap<>();
+        if (enclosingLocals != null) {
+            for (Local local : enclosingLocals.values()) {
+                if (local.tracked) {
+                    state.put(local, local.type);
+                }
+            }
+        }
+        for (Map<String, Local> scope : scopes) {
+            for (Local local : scope.values()) {
+                if (local.tracked) {
+                    state.put(local, local.type);
+                }
+            }
+        }
+        return state;
+    }
+
+    private static void restore(Map<Local, Type> state) {
+        state.forEach((local, type) -> local.type = type);
+    }
+
+    /**
+     * Joins two states taken at points where the same locals were in scope.
+     */
+    private static Map<Local, Type> join(Map<Local, Type> a, Map<Local, Type> b) {
+        Map<Local, Type> joined = new IdentityHashMap<>();
+        a.forEach((local, type) -> joined.put(local, type.join(b.getOrDefault(local, Type.UNKNOWN))));
+        return joined;
+    }
+
+    private static Type arithmetic(TokenType operator, Type left, Type right) {
+        switch (operator) {
+            case PLUS:
+                if (left == Type.NUMBER && right == Type.NUMBER) {
+                    return Type.NUMBER;
+                }
+                return left == Type.STRING || right == Type.STRING ? Type.STRING : Type.UNKNOWN;
+            case MINUS:
+            case STAR:
+            case SLASH:
+                return Type.NUMBER;
+            default:
+                return Type.BOOLEAN;
+        }
+    }
+
+    private void inferFunction(List<Token> params, List<Stmt> body) {
+        functions++;
+        scopes.push(new HashMap<>());
+        for (Token param : params) {
+            declare(param.lexeme, false, Type.UNKNOWN);
+        }
+        infer(body);
+        scopes.pop();
+        functions--;
+    }
+
+    @Override
+    public Type visitAssignExpr(Expr.Assign expr) {
+        Type type = infer(expr.value);
+        assign(expr.name.lexeme, expr.depth, expr.captured, type);
+        return type;
+    }
+
+    @Override
+    public Type visitBinaryExpr(Expr.Binary expr) {
+        Type left = infer(expr.left);
+        Type right = infer(expr.right);
+        expr.numeric = left == Type.NUMBER && right == Type.NUMBER;
+        return arithmetic(expr.operator.type, left, right);
+    }
+
+    @Override
+    public Type visitCallExpr(Expr.Call expr) {
+        infer(expr.callee);
+        expr.arguments.forEach(this::infer);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitGetExpr(Expr.Get expr) {
+        infer(expr.object);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitGroupingExpr(Expr.Grouping expr) {
+        return infer(expr.expression);
+    }
+
+    @Override
+    public Type visitLiteralExpr(Expr.Literal expr) {
+        if (expr.value instanceof Double) {
+            return Type.NUMBER;
+        }
+        if (expr.value instanceof String) {
+            return Type.STRING;
+        }
+        if (expr.value instanceof Boolean) {
+            return Type.BOOLEAN;
+        }
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitLogicalExpr(Expr.Logical expr) {
+        Type left = infer(expr.left);
+        Map<Local, Type> skipped = snapshot();
+        Type right = infer(expr.right);
+        restore(join(skipped, snapshot()));
+        return left.join(right);
+    }
+
+    @Override
+    public Type visitSetExpr(Expr.Set expr) {
+        infer(expr.object);
+        return infer(expr.value);
+    }
+
+    @Override
+    public Type visitSuperExpr(Expr.Super expr) {
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitThisExpr(Expr.This expr) {
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitUnaryExpr(Expr.Unary expr) {
+        Type operand = infer(expr.right);
+        expr.numeric = operand == Type.NUMBER;
+        return expr.operator.type == TokenType.MINUS ? Type.NUMBER : Type.BOOLEAN;
+    }
+
+    @Override
+    public Type visitTernaryExpr(Expr.Ternary expr) {
+        infer(expr.condition);
+        Map<Local, Type> before = snapshot();
+        Type left = infer(expr.left);
+        Map<Local, Type> afterLeft = snapshot();
+        restore(before);
+        Type right = infer(expr.right);
+        restore(join(afterLeft, snapshot()));
+        return left.join(right);
+    }
+
+    @Override
+    public Type visitVariableExpr(Expr.Variable expr) {
+        return typeOf(expr.name.lexeme, expr.depth, expr.captured);
+    }
+
+    @Override
+    public Type visitAnonFunctionExpr(Expr.AnonFunction expr) {
+        inferFunction(expr.params, expr.body);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitArrayLiteralExpr(Expr.ArrayLiteral expr) {
+        expr.elements.forEach(this::infer);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitIndexExpr(Expr.Index expr) {
+        infer(expr.object);
+        infer(expr.index);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Type visitIndexSetExpr(Expr.IndexSet expr) {
+        infer(expr.object);
+        infer(expr.index);
+        return infer(expr.value);
+    }
+
+    @Override
+    public Type visitCompareConstantExpr(Expr.CompareConstant expr) {
+        return Type.BOOLEAN;
+    }
+
+    @Override
+    public Type visitIncrementExpr(Expr.Increment expr) {
+        Type current = typeOf(expr.name.lexeme, expr.depth, expr.captured);
+        Type type = arithmetic(expr.operator.type, current, Type.NUMBER);
+        assign(expr.name.lexeme, expr.depth, expr.captured, type);
+        return type;
+    }
+
+    @Override
+    public Type visitCompoundAssignExpr(Expr.CompoundAssign expr) {
+        Type current = typeOf(expr.name.lexeme, expr.depth, expr.captured);
+        Type type = arithmetic(expr.operator.type, current, infer(expr.operand));
+        assign(expr.name.lexeme, expr.depth, expr.captured, type);
+        return type;
+    }
+
+    @Override
+    public Type visitInvokeExpr(Expr.Invoke expr) {
+        infer(expr.object);
+        expr.arguments.forEach(this::infer);
+        return Type.UNKNOWN;
+    }
+
+    @Override
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        int blockFrames = stmt.scoped ? 1 : 0;
+        frames += blockFrames;
+        scopes.push(new HashMap<>());
+        infer(stmt.statements);
+        scopes.pop();
+        frames -= blockFrames;
+        return null;
+    }
+
+    @Override
+    public Void visitClassStmt(Stmt.Class stmt) {
+        declare(stmt.name.lexeme, false, Type.UNKNOWN);
+        for (Stmt.Function method : stmt.methods) {
+            inferFunction(method.params, method.body);
+        }
+        for (Stmt.Function getter : stmt.getters) {
+            inferFunction(getter.params, getter.body);
+        }
+        for (Stmt.Function staticMethod : stmt.staticMethods) {
+            inferFunction(staticMethod.params, staticMethod.body);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        infer(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        declare(stmt.name.lexeme, false, Type.UNKNOWN);
+        inferFunction(stmt.params, stmt.body);
+        return null;
+    }
+
+    @Override
+    public Void visitIfStmt(Stmt.If stmt) {
+        infer(stmt.condition);
+        Map<Local, Type> before = snapshot();
+        infer(stmt.thenBranch);
+        Map<Local, Type> afterThen = snapshot();
+        restore(before);
+        if (stmt.elseBranch != null) {
+            infer(stmt.elseBranch);
+        }
+        restore(join(afterThen, snapshot()));
+        return null;
+    }
+
+    @Override
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        infer(stmt.expression);
+        return null;
+    }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (stmt.value != null) {
+            infer(stmt.value);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitVarStmt(Stmt.Var stmt) {
+        Type type = stmt.initializer == null ? Type.UNKNOWN : infer(stmt.initializer);
+        declare(stmt.name.lexeme, !stmt.captured, type);
+        return null;
+    }
+
+    /**
+     * Iterates the loop until the state at its head stops changing, so the annotations left by the last pass hold
+     * for every iteration. The loop exits after its condition or at a break.
+     */
+    @Override
+    public Void visitWhileStmt(Stmt.While stmt) {
+        Map<Local, Type> head = snapshot();
+        List<Map<Local, Type>> exits;
+        while (true) {
+            exits = new ArrayList<>();
+            loopExits.push(exits);
+            infer(stmt.condition);
+            infer(stmt.body);
+            loopExits.pop();
+            Map<Local, Type> widened = join(head, snapshot());
+            if (widened.equals(head)) {
+                break;
+            }
+            head = widened;
+            restore(head);
+        }
+        restore(head);
+        infer(stmt.condition);
+        Map<Local, Type> exit = snapshot();
+        for (Map<Local, Type> breakState : exits) {
+            exit = join(exit, breakState);
+        }
+        restore(exit);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (!loopExits.isEmpty()) {
+            loopExits.peek().add(snapshot());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visitImportStmt(Stmt.Import stmt) {
+        return null;
+    }
+
+    @Override
+    public Void visitTracedStmt(Stmt.Traced stmt) {
+        infer(stmt.statement);
+        return null;
+    }
+
+    @Override
+    public Void visitTracedCallStmt(Stmt.TracedCall stmt) {
+        infer(stmt.body);
+        return null;
+    }
+}
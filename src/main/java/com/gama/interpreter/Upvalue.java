@@ -0,0 +1,34 @@
+package com.gama.interpreter;
+
+/**
+ * A variable captured by a closure. While the frame that declared it is still executing, the upvalue reads and writes
+ * through to that frame; when the frame exits it is closed over the variable's last value and lets go of the frame.
+ */
+public class Upvalue {
+    private final String name;
+    private volatile Environment frame;
+    private volatile Object value;
+
+    Upvalue(Environment frame, String name) {
+        this.frame = frame;
+        this.name = name;
+    }
+
+    public Object get() {
+        Environment open = frame;
+        return open != null ? open.getAt(0, name) : value;
+    }
+
+    public synchronized void set(Object value) {
+        if (frame != null) {
+            frame.define(name, value);
+        } else {
+            this.value = value;
+        }
+    }
+
+    synchronized void close() {
+        value = frame.getAt(0, name);
+        frame = null;
+    }
+}
@@ -1,97 +1,117 @@
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.Arrays;
-import java.util.List;
-
-public class GenerateAst {
-    public static void main(String[] args) throws IOException {
-        defineAst("src/main/java/com/gama/interpreter", "Expr", Arrays.asList(
-                "Assign   : Token name, Expr value",
-                "Binary   : Expr left, Token operator, Expr right",
-                "Call     : Expr callee, Token paren, List<Expr> arguments",
-                "Get      : Expr object, Token name",
-                "Grouping : Expr expression",
-                "Literal  : Object value",
-                "Logical  : Expr left, Token operator, Expr right",
-                "Set      : Expr object, Token name, Expr value",
-                "Super    : Token keyword, Token method",
-                "This     : Token keyword",
-                "Unary    : Token operator, Expr right",
-                "Ternary  : Expr condition, Expr left, Expr right",
-                "Variable : Token name",
-                "AnonFunction : List<Token> params, List<Stmt> body"
-        ));
-        defineAst("src/main/java/com/gama/interpreter", "Stmt", Arrays.asList(
-                "Block      : List<Stmt> statements",
-                "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods, List<Stmt.Function> getters, List<Stmt.Function> staticMethods",
-                "Expression : Expr expression",
-                "Function   : Token name, List<Token> params, List<Stmt> body",
-                "If         : Expr condition, Stmt thenBranch, Stmt elseBranch",
-                "Print      : Expr expression",
-                "Return     : Token keyword, Expr value",
-                "Var        : Token name, Expr initializer",
-                "While      : Expr condition, Stmt body",
-                "Break      : Token breakToken"
-        ));
-    }
-
-    private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
-        String path = outputDir + "/" + baseName + ".java";
-        PrintWriter writer = new PrintWriter(path, "UTF-8");
-
-        writer.println("package com.gama.interpreter;");
-        writer.println();
-        writer.println("import java.util.List;");
-        writer.println();
-        writer.println("abstract class " + baseName + " {");
-        writer.println();
-        defineVisitor(writer, baseName, types);
-
-        writer.println("  public abstract <R> R accept(Visitor<R> visitor);");
-        writer.println();
-
-        for (String type : types) {
-            String className = type.split(":")[0].trim();
-            String fields = type.split(":")[1].trim();
-            defineType(writer, baseName, className, fields);
-        }
-
-        writer.println("}");
-        writer.close();
-    }
-
-    private static void defineVisitor(PrintWriter writer, String baseName, List<String> types) {
-        writer.println("  public interface Visitor<R> {");
-        for (String type : types) {
-            String typeName = type.split(":")[0].trim();
-            writer.println("    R visit" + typeName + baseName + "(" + typeName + " " + baseName.toLowerCase() + ");");
-        }
-        writer.println("  }");
-        writer.println();
-    }
-
-    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
-        writer.println("  public static class " + className + " extends " + baseName + " {");
-        String[] fields = fieldList.split(", ");
-        for (String field : fields) {
-            writer.println("    public final " + field + ";");
-        }
-
-        writer.println();
-        writer.println("    public " + className + "(" + fieldList + ") {");
-        for (String field : fields) {
-            String name = field.split(" ")[1];
-            writer.println("      this." + name + " = " + name + ";");
-        }
-        writer.println("    }");
-
-        writer.println();
-        writer.println("    @Override");
-        writer.println("    public <R> R accept(Visitor<R> visitor) {");
-        writer.println("      return visitor.visit" + className + baseName + "(this);");
-        writer.println("    }");
-
-        writer.println("  }");
-        writer.println();
-    }
-}
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.List;
+
+public class GenerateAst {
+    public static void main(String[] args) throws IOException {
+        defineAst("src/main/java/com/gama/interpreter", "Expr", Arrays.asList(
+                "Assign   : Token name, Expr value | int depth = -1, boolean captured = false, GlobalEnvironment.Cell cell = null",
+                "Binary   : Expr left, Token operator, Expr right | boolean numeric = false",
+                "Call     : Expr callee, Token paren, List<Expr> arguments",
+                "Get      : Expr object, Token name",
+                "Grouping : Expr expression",
+                "Literal  : Object value",
+                "Logical  : Expr left, Token operator, Expr right",
+                "Set      : Expr object, Token name, Expr value",
+                "Super    : Token keyword, Token method | int depth = -1, boolean captured = false, int thisDepth = -1, boolean thisCaptured = false",
+                "This     : Token keyword | int depth = -1, boolean captured = false",
+                "Unary    : Token operator, Expr right | boolean numeric = false",
+                "Ternary  : Expr condition, Expr left, Expr right",
+                "Variable : Token name | int depth = -1, boolean captured = false, GlobalEnvironment.Cell cell = null",
+                "AnonFunction : List<Token> params, List<Stmt> body | Capture[] captures = new Capture[0], FunctionProfile profile = new FunctionProfile()",
+                "ArrayLiteral : Token bracket, List<Expr> elements",
+                "Index    : Expr object, Token bracket, Expr index",
+                "IndexSet : Expr object, Token bracket, Expr index, Expr value",
+                "CompareConstant : Token name, Token operator, double constant | int depth = -1, boolean captured = false, GlobalEnvironment.Cell cell = null",
+                "Increment : Token name, Token operator, double delta | int depth = -1, boolean captured = false, GlobalEnvironment.Cell cell = null",
+                "CompoundAssign : Token name, Token operator, Expr operand | int depth = -1, boolean captured = false, GlobalEnvironment.Cell cell = null",
+                "Invoke   : Expr object, Token name, Token paren, List<Expr> arguments"
+        ));
+        defineAst("src/main/java/com/gama/interpreter", "Stmt", Arrays.asList(
+                "Block      : List<Stmt> statements | boolean scoped = true, boolean reusable = false",
+                "Class      : Token name, Expr.Variable superclass, List<Stmt.Function> methods, List<Stmt.Function> getters, List<Stmt.Function> staticMethods",
+                "Expression : Expr expression | int line = 0",
+                "Function   : Token name, List<Token> params, List<Stmt> body | Capture[] captures = new Capture[0], FunctionProfile profile = new FunctionProfile()",
+                "If         : Expr condition, Stmt thenBranch, Stmt elseBranch | int line = 0",
+                "Print      : Expr expression | int line = 0",
+                "Return     : Token keyword, Expr value",
+                "Var        : Token name, Expr initializer | boolean captured = false",
+                "While      : Token keyword, Expr condition, Stmt body | OnStackReplacement replacement = null",
+                "Break      : Token breakToken",
+                "Import     : Token keyword, Token path",
+                "Traced     : Stmt statement, int line, Tracer tracer",
+                "TracedCall : String name, int line, Stmt body, Tracer tracer"
+        ));
+    }
+
+    private static void defineAst(String outputDir, String baseName, List<String> types) throws IOException {
+        String path = outputDir + "/" + baseName + ".java";
+        PrintWriter writer = new PrintWriter(path, "UTF-8");
+
+        writer.println("package com.gama.interpreter;");
+        writer.println();
+        writer.println("import java.util.List;");
+        writer.println();
+        writer.println("abstract class " + baseName + " {");
+        writer.println();
+        defineVisitor(writer, baseName, types);
+
+        writer.println("  public abstract <R> R accept(Visitor<R> visitor);");
+        writer.println();
+
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            String fields = type.split(":")[1].trim();
+            defineType(writer, baseName, className, fields);
+        }
+
+        writer.println("}");
+        writer.close();
+    }
+
+    private static void defineVisitor(PrintWriter writer, String baseName, List<String> types) {
+        writer.println("  public interface Visitor<R> {");
+        for (String type : types) {
+            String typeName = type.split(":")[0].trim();
+            writer.println("    R visit" + typeName + baseName + "(" + typeName + " " + baseName.toLowerCase() + ");");
+        }
+        writer.println("  }");
+        writer.println();
+    }
+
+    private static void defineType(PrintWriter writer, String baseName, String className, String fieldList) {
+        writer.println("  public static class " + className + " extends " + baseName + " {");
+        String annotationList = null;
+        if (fieldList.contains("|")) {
+            annotationList = fieldList.split("\\|")[1].trim();
+            fieldList = fieldList.split("\\|")[0].trim();
+        }
+        String[] fields = fieldList.split(", ");
+        for (String field : fields) {
+            writer.println("    public final " + field + ";");
+        }
+        if (annotationList != null) {
+            for (String annotation : annotationList.split(", ")) {
+                writer.println("    public " + annotation + ";");
+            }
+        }
+
+        writer.println();
+        writer.println("    public " + className + "(" + fieldList + ") {");
+        for (String field : fields) {
+            String name = field.split(" ")[1];
+            writer.println("      this." + name + " = " + name + ";");
+        }
+        writer.println("    }");
+
+        writer.println();
+        writer.println("    @Override");
+        writer.println("    public <R> R accept(Visitor<R> visitor) {");
+        writer.println("      return visitor.visit" + className + baseName + "(this);");
+        writer.println("    }");
+
+        writer.println("  }");
+        writer.println();
+    }
+}